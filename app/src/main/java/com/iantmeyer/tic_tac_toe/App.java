@@ -2,13 +2,32 @@ package com.iantmeyer.tic_tac_toe;
 
 import android.app.Application;
 import android.content.Context;
+import android.os.AsyncTask;
+
+import com.iantmeyer.tic_tac_toe.game.Events;
+import com.iantmeyer.tic_tac_toe.game.GameAi;
+import com.iantmeyer.tic_tac_toe.game.GameHistoryStore;
+import com.iantmeyer.tic_tac_toe.game.Log;
+import com.iantmeyer.tic_tac_toe.game.MoveJournal;
+import com.iantmeyer.tic_tac_toe.util.AndroidLogger;
+import com.iantmeyer.tic_tac_toe.util.BusProvider;
+import com.iantmeyer.tic_tac_toe.util.MainThreadExecutor;
+
+import java.io.File;
 
 /**
  * Created by ianmeyer on 12/19/15.
  */
 public class App extends Application {
 
+    private static final String JOURNAL_FILE = "game.journal";
+    private static final String HISTORY_FILE = "history.bin";
+    // the game used to be saved as one snapshot, which the journal replaced
+    private static final String OLD_SNAPSHOT_FILE = "game.snapshot";
+
     private static Context mContext;
+    private static MoveJournal mMoveJournal;
+    private static GameHistoryStore mGameHistory;
 
     @Override
     public void onCreate() {
@@ -16,9 +35,37 @@ public class App extends Application {
 
         mContext = getBaseContext();
 
+        // plug the Android platform into the game engine
+        Log.setLogger(new AndroidLogger());
+        Events.setPoster(BusProvider.INSTANCE);
+        GameAi.withExecutors(AsyncTask.SERIAL_EXECUTOR, new MainThreadExecutor());
+        GameAi.withPondering(true);
+
+        deleteFile(OLD_SNAPSHOT_FILE);
+        deleteFile(OLD_SNAPSHOT_FILE + ".tmp");
+        mMoveJournal = new MoveJournal(new File(getFilesDir(), JOURNAL_FILE));
+        mGameHistory = new GameHistoryStore(new File(getFilesDir(), HISTORY_FILE));
     }
 
     public static Context getAppContext() {
         return mContext;
     }
+
+    /**
+     * Where the game in progress is saved, move by move
+     *
+     * @return
+     */
+    public static MoveJournal getMoveJournal() {
+        return mMoveJournal;
+    }
+
+    /**
+     * Where every game played is kept
+     *
+     * @return
+     */
+    public static GameHistoryStore getGameHistory() {
+        return mGameHistory;
+    }
 }
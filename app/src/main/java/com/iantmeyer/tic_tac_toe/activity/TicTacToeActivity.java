@@ -16,9 +16,12 @@ import android.view.MenuItem;
 import android.widget.TextView;
 import android.widget.Toolbar;
 
+import com.iantmeyer.tic_tac_toe.App;
 import com.iantmeyer.tic_tac_toe.R;
 import com.iantmeyer.tic_tac_toe.fragment.SettingsFragment;
 import com.iantmeyer.tic_tac_toe.fragment.TicTacToeFragment;
+import com.iantmeyer.tic_tac_toe.game.GameSnapshot;
+import com.iantmeyer.tic_tac_toe.game.MoveJournal;
 import com.iantmeyer.tic_tac_toe.game.TicTacToeGame;
 import com.iantmeyer.tic_tac_toe.util.BusProvider;
 import com.iantmeyer.tic_tac_toe.util.FragmentHelper;
@@ -51,11 +54,18 @@ public class TicTacToeActivity extends AppCompatActivity
 
         if (mGame == null) {
             Log.i(TAG, "Initialize game object");
-            int[][] savedBoard = SettingsUtil.getGameBoard(3);
-            mGame = new TicTacToeGame(savedBoard);
-            mGame.setPlayerHuman(1, SettingsUtil.isPlayerHuman(1));
-            mGame.setPlayerHuman(2, SettingsUtil.isPlayerHuman(2));
-            mGame.setState(SettingsUtil.getGameState());
+            MoveJournal journal = App.getMoveJournal();
+            mGame = journal.recover();
+            if (mGame != null) {
+                mGame.setJournal(journal);
+                mGame.resume();
+            } else {
+                mGame = new TicTacToeGame(new int[3][3]);
+                mGame.setPlayerHuman(1, SettingsUtil.isPlayerHuman(1));
+                mGame.setPlayerHuman(2, SettingsUtil.isPlayerHuman(2));
+                mGame.setJournal(journal);
+            }
+            mGame.setHistoryStore(App.getGameHistory());
         }
 
         mToolbar.inflateMenu(R.menu.menu_main);
@@ -72,8 +82,9 @@ public class TicTacToeActivity extends AppCompatActivity
     protected void onPause() {
         super.onPause();
 
-        SettingsUtil.saveGameBoard(mGame.getBoard());
-        SettingsUtil.saveGameState(mGame.getState());
+        // every move is already journaled, compact the journal to the current position
+        App.getMoveJournal().checkpoint(GameSnapshot.of(mGame));
+        App.getGameHistory().commit();
 
         BusProvider.INSTANCE.getBus().unregister(this);
     }
@@ -126,6 +126,19 @@ public class TicTacToeFragment extends Fragment {
         setSnackbar();
     }
 
+    @Subscribe
+    public void onGameAiFailed(TicTacToeGame.AiFailedEvent aiFailedEvent) {
+        mSnackbar = Snackbar.make(getView(), "The computer could not find a move", Snackbar.LENGTH_INDEFINITE);
+        mSnackbar.setAction("RETRY", new View.OnClickListener() {
+                    @Override
+                    public void onClick(View v) {
+                        getGame().resume();
+                    }
+                }
+        );
+        mSnackbar.show();
+    }
+
     @Subscribe
     public void onResetGame(TicTacToeGame.ResetGameEvent resetGameEvent) {
         setSnackbar();
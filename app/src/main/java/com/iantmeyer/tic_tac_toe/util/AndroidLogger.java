@@ -0,0 +1,17 @@
+package com.iantmeyer.tic_tac_toe.util;
+
+import android.util.Log;
+
+/**
+ * Writes game engine log messages to logcat
+ */
+public class AndroidLogger implements com.iantmeyer.tic_tac_toe.game.Log.Logger {
+
+    @Override
+    public void log(int priority, String tag, String msg, Throwable tr) {
+        if (tr != null) {
+            msg = msg + '\n' + Log.getStackTraceString(tr);
+        }
+        Log.println(priority, tag, msg);
+    }
+}
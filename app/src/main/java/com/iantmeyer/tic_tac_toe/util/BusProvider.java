@@ -1,8 +1,9 @@
 package com.iantmeyer.tic_tac_toe.util;
 
+import com.iantmeyer.tic_tac_toe.game.Events;
 import com.squareup.otto.Bus;
 
-public enum BusProvider {
+public enum BusProvider implements Events.Poster {
     INSTANCE;
 
     private final Bus mBus;
@@ -19,4 +20,14 @@ public enum BusProvider {
     public Bus getBus() {
         return mBus;
     }
+
+    /**
+     * Forward game engine events to the bus
+     *
+     * @param event
+     */
+    @Override
+    public void post(Object event) {
+        mBus.post(event);
+    }
 }
@@ -0,0 +1,19 @@
+package com.iantmeyer.tic_tac_toe.util;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import java.util.concurrent.Executor;
+
+/**
+ * Runs tasks on the main thread, where the views and the event bus live
+ */
+public class MainThreadExecutor implements Executor {
+
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+
+    @Override
+    public void execute(Runnable runnable) {
+        mHandler.post(runnable);
+    }
+}
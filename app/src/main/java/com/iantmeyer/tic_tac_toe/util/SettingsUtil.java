@@ -4,7 +4,6 @@ import android.content.Context;
 import android.content.SharedPreferences;
 
 import com.iantmeyer.tic_tac_toe.App;
-import com.iantmeyer.tic_tac_toe.game.TicTacToeGame;
 
 /**
  * Created by ianmeyer on 12/21/15.
@@ -13,8 +12,6 @@ public class SettingsUtil {
     private static final String FIRST_PLAYER = "first_player";
     private static final String PLAYER_1_HUMAN = "player_1_human";
     private static final String PLAYER_2_HUMAN = "player_2_human";
-    private static final String GAME_BOARD = "game_board_#R#_#C#";
-    private static final String GAME_STATE = "game_state";
 
     private SettingsUtil() {
         // Don't allow instantiation
@@ -45,35 +42,6 @@ public class SettingsUtil {
         }
     }
 
-    public static int[][] getGameBoard(int size) {
-        int[][] board = new int[size][size];
-        for(int rowIdx = 0; rowIdx < size; rowIdx++) {
-            for (int colIdx = 0; colIdx < size; colIdx++) {
-                String key = GAME_BOARD.replace("#R#", "" + rowIdx).replace("#C#", "" + colIdx);
-                board[rowIdx][colIdx] = getInteger(key, 0);
-            }
-        }
-        return board;
-    }
-
-    public static void saveGameBoard(int[][] board) {
-        for(int rowIdx = 0; rowIdx < board.length; rowIdx++) {
-            for (int colIdx = 0; colIdx < board[0].length; colIdx++) {
-                String key = GAME_BOARD.replace("#R#", "" + rowIdx).replace("#C#", "" + colIdx);
-                setInteger(key, board[rowIdx][colIdx]);
-            }
-        }
-    }
-
-    public static void saveGameState(TicTacToeGame.State state) {
-        setInteger(GAME_STATE, state.ordinal());
-    }
-
-    public static TicTacToeGame.State getGameState() {
-        int ordinal = getInteger(GAME_STATE, TicTacToeGame.State.SET_UP.ordinal());
-        return TicTacToeGame.State.values()[ordinal];
-    }
-
     /*
         helper functions
      */
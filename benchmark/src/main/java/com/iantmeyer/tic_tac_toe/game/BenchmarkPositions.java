@@ -0,0 +1,84 @@
+package com.iantmeyer.tic_tac_toe.game;
+
+import java.util.Arrays;
+
+/**
+ * The fixed positions shared by the engine benchmarks
+ * <br><br>
+ * Boards are written row by row, rows separated by '/', with 'X' for player 1, 'O' for player 2
+ * and '.' for an empty cell. Every position has as many X's as O's, so player 1 is to move.
+ * <br><br>
+ * Keep existing positions unchanged, so results stay comparable between runs.
+ */
+final class BenchmarkPositions {
+
+    static final String EMPTY_3X3 = "3x3-empty";
+    static final String MIDGAME_3X3 = "3x3-midgame";
+    static final String OPENING_4X4 = "4x4-opening";
+    static final String MIDGAME_4X4 = "4x4-midgame";
+    static final String OPENING_5X5 = "5x5-opening";
+    static final String OPENING_8X8 = "8x8-opening";
+
+    private static final String[] NAMES = {
+            EMPTY_3X3, MIDGAME_3X3, OPENING_4X4, MIDGAME_4X4, OPENING_5X5, OPENING_8X8
+    };
+
+    private static final String[] BOARDS = {
+            ".../.../...",
+            "X.O/.X./..O",
+            "X.../.O../..../....",
+            "XO.X/.OX./O.../....",
+            "X..../..O../...../...../.....",
+            "X......./......../..O...../......../......../......../......../........"
+    };
+
+    /**
+     * The search depth for each position, -1 searches to the end of the game
+     */
+    private static final int[] MAX_DEPTHS = {-1, -1, 4, -1, 3, 2};
+
+    private BenchmarkPositions() {
+        // discourage instantiation
+    }
+
+    /**
+     * Create a game set up with a benchmark position
+     *
+     * @param name
+     * @return
+     */
+    static TicTacToeGame createGame(String name) {
+        String[] rows = BOARDS[indexOf(name)].split("/");
+        int[][] board = new int[rows.length][rows.length];
+        for (int row = 0; row < rows.length; row++) {
+            for (int column = 0; column < rows.length; column++) {
+                char cell = rows[row].charAt(column);
+                board[row][column] = cell == 'X' ? 1 : cell == 'O' ? 2 : 0;
+            }
+        }
+        TicTacToeGame game = new TicTacToeGame(board);
+        game.setPlayerHuman(1, true);
+        game.setPlayerHuman(2, true);
+        return game;
+    }
+
+    /**
+     * The GameAi search depth used for a benchmark position
+     *
+     * @param name
+     * @return
+     */
+    static int getMaxDepth(String name) {
+        return MAX_DEPTHS[indexOf(name)];
+    }
+
+    private static int indexOf(String name) {
+        for (int idx = 0; idx < NAMES.length; idx++) {
+            if (NAMES[idx].equals(name)) {
+                return idx;
+            }
+        }
+        throw new IllegalArgumentException("Unknown benchmark position " + name
+                + ", expected one of " + Arrays.toString(NAMES));
+    }
+}
@@ -0,0 +1,70 @@
+package com.iantmeyer.tic_tac_toe.game;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Throughput of a whole GameAi best-move search
+ * <br><br>
+ * The transposition table is cleared before every search, so each search starts cold as it would
+ * for a new game. 3x3 positions are answered by the perfect-play table rather than searched.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GameAiBenchmark {
+
+    private static final long TABLE_BYTES = 4 * 1024 * 1024;
+
+    @Param({
+            BenchmarkPositions.EMPTY_3X3,
+            BenchmarkPositions.MIDGAME_3X3,
+            BenchmarkPositions.OPENING_4X4,
+            BenchmarkPositions.MIDGAME_4X4,
+            BenchmarkPositions.OPENING_5X5,
+            BenchmarkPositions.OPENING_8X8
+    })
+    public String position;
+
+    @Param({"1", "4"})
+    public int parallelism;
+
+    private TicTacToeGame mGame;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Log.setLogger(Log.SILENT);
+        mGame = BenchmarkPositions.createGame(position);
+        GameAi.with(BenchmarkPositions.getMaxDepth(position));
+        GameAi.withMoveOrdering(true);
+        GameAi.withTranspositionTableSize(TABLE_BYTES);
+        GameAi.withParallelism(parallelism);
+    }
+
+    @Setup(Level.Invocation)
+    public void clearTable() {
+        GameAi.clearTranspositionTable();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        GameAi.withParallelism(1);
+    }
+
+    @Benchmark
+    public GameAi.MoveInterface getBestMove() {
+        return GameAi.getBestMove(mGame);
+    }
+}
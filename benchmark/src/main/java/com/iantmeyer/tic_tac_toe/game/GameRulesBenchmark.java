@@ -0,0 +1,86 @@
+package com.iantmeyer.tic_tac_toe.game;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+
+/**
+ * Throughput of the rule checks the search runs at every node
+ * <br><br>
+ * Except for getAvailableMoves, each operation is measured once for every empty cell of the
+ * position, so one op covers the whole move list. The search works on encoded moves, so all but
+ * createGameAfterMove use them; only the MoveInterface form of getAvailableMoves is measured as well.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GameRulesBenchmark {
+
+    @Param({
+            BenchmarkPositions.EMPTY_3X3,
+            BenchmarkPositions.MIDGAME_3X3,
+            BenchmarkPositions.MIDGAME_4X4,
+            BenchmarkPositions.OPENING_5X5,
+            BenchmarkPositions.OPENING_8X8
+    })
+    public String position;
+
+    private TicTacToeGame mGame;
+    private GameAi.MoveInterface[] mMoves;
+    private int[] mEncodedMoves;
+    private int[] mMoveBuffer;
+
+    @Setup
+    public void setUp() {
+        Log.setLogger(Log.SILENT);
+        mGame = BenchmarkPositions.createGame(position);
+        ArrayList<GameAi.MoveInterface> moves = mGame.getAvailableMoves();
+        mMoves = moves.toArray(new GameAi.MoveInterface[moves.size()]);
+        mMoveBuffer = new int[mGame.getMaxMoveCount()];
+        mEncodedMoves = new int[mGame.getAvailableMoves(mMoveBuffer)];
+        System.arraycopy(mMoveBuffer, 0, mEncodedMoves, 0, mEncodedMoves.length);
+    }
+
+    @Benchmark
+    public void isWinningMove(Blackhole blackhole) {
+        for (int move : mEncodedMoves) {
+            blackhole.consume(mGame.isWinningMove(move));
+        }
+    }
+
+    @Benchmark
+    public void isDrawMove(Blackhole blackhole) {
+        for (int move : mEncodedMoves) {
+            blackhole.consume(mGame.isDrawMove(move));
+        }
+    }
+
+    @Benchmark
+    public int getAvailableMoves() {
+        return mGame.getAvailableMoves(mMoveBuffer);
+    }
+
+    @Benchmark
+    public ArrayList<GameAi.MoveInterface> getAvailableMoveList() {
+        return mGame.getAvailableMoves();
+    }
+
+    @Benchmark
+    public void createGameAfterMove(Blackhole blackhole) {
+        for (GameAi.MoveInterface move : mMoves) {
+            blackhole.consume(mGame.createGameAfterMove(move));
+        }
+    }
+}
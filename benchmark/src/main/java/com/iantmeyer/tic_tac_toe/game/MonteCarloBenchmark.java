@@ -0,0 +1,55 @@
+package com.iantmeyer.tic_tac_toe.game;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Playouts per second of a Monte Carlo tree search on an empty 9x9 board, 5 in a row, by the
+ * number of threads sharing the tree
+ * <br><br>
+ * Each op is one playout, so the score is directly in playouts per second.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MonteCarloBenchmark {
+
+    private static final int PLAYOUTS = 2000;
+
+    @Param({"1", "2", "4", "8"})
+    public int threads;
+
+    private MnkGame mGame;
+
+    @Setup
+    public void setUp() {
+        Log.setLogger(Log.SILENT);
+        mGame = new MnkGame(9, 9, 5);
+        mGame.setAiStrategy(GameAi.Strategy.MONTE_CARLO);
+        GameAi.withMonteCarloPlayouts(PLAYOUTS);
+        GameAi.withParallelism(threads);
+    }
+
+    @TearDown
+    public void tearDown() {
+        GameAi.withParallelism(1);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(PLAYOUTS)
+    public GameAi.MoveInterface search() {
+        return GameAi.getBestMove(mGame);
+    }
+}
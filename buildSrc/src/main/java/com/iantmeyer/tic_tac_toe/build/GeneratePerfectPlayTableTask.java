@@ -0,0 +1,31 @@
+package com.iantmeyer.tic_tac_toe.build;
+
+import org.gradle.api.DefaultTask;
+import org.gradle.api.tasks.OutputFile;
+import org.gradle.api.tasks.TaskAction;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Gradle task writing the 3x3 perfect-play table, see PerfectPlayTableGenerator
+ */
+public class GeneratePerfectPlayTableTask extends DefaultTask {
+
+    private File mOutputFile;
+
+    @OutputFile
+    public File getOutputFile() {
+        return mOutputFile;
+    }
+
+    public void setOutputFile(File outputFile) {
+        mOutputFile = outputFile;
+    }
+
+    @TaskAction
+    public void generate() throws IOException {
+        PerfectPlayTableGenerator.write(mOutputFile);
+        getLogger().info("Wrote perfect-play table " + mOutputFile);
+    }
+}
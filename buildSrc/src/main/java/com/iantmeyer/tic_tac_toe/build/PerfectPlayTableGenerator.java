@@ -0,0 +1,238 @@
+package com.iantmeyer.tic_tac_toe.build;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+/**
+ * Solves every reachable 3x3 tic-tac-toe position and writes the perfect-play table read by
+ * com.iantmeyer.tic_tac_toe.game.PerfectPlayTable
+ * <br><br>
+ * Positions are seen from the player to move: each square is a base-3 digit, 0 for empty,
+ * 1 for the player to move and 2 for the opponent, with square (row * 3 + column) as digit
+ * (row * 3 + column). Only the canonical position of each symmetry class is written, the one with
+ * the smallest rank among its 8 rotations and reflections.
+ * <br><br>
+ * File format, big endian:
+ * <pre>
+ * int    MAGIC
+ * short  VERSION
+ * int    number of entries
+ * entries: unsigned short rank, unsigned short (value << 9 | best move mask)
+ * </pre>
+ * The value is 1 for a loss, 2 for a draw and 3 for a win of the player to move. The best move
+ * mask has bit (row * 3 + column) set for every move reaching that value fastest, or for a loss,
+ * slowest.
+ */
+public final class PerfectPlayTableGenerator {
+
+    public static final int MAGIC = 0x54545433;   // "TTT3"
+    public static final int VERSION = 1;
+
+    private static final int SIZE = 3;
+    private static final int CELLS = SIZE * SIZE;
+    private static final int POSITIONS = 19683;  // 3^9
+
+    private static final int LOSS = 1;
+    private static final int DRAW = 2;
+    private static final int WIN = 3;
+
+    private static final int[][] LINES = {
+            {0, 1, 2}, {3, 4, 5}, {6, 7, 8},
+            {0, 3, 6}, {1, 4, 7}, {2, 5, 8},
+            {0, 4, 8}, {2, 4, 6}
+    };
+
+    private static final int[] POWERS = new int[CELLS];
+    private static final int[][] SYMMETRIES = new int[8][CELLS];
+
+    static {
+        POWERS[0] = 1;
+        for (int cell = 1; cell < CELLS; cell++) {
+            POWERS[cell] = POWERS[cell - 1] * 3;
+        }
+        int last = SIZE - 1;
+        for (int row = 0; row < SIZE; row++) {
+            for (int col = 0; col < SIZE; col++) {
+                int cell = row * SIZE + col;
+                SYMMETRIES[0][cell] = cell;
+                SYMMETRIES[1][cell] = col * SIZE + (last - row);
+                SYMMETRIES[2][cell] = (last - row) * SIZE + (last - col);
+                SYMMETRIES[3][cell] = (last - col) * SIZE + row;
+                SYMMETRIES[4][cell] = row * SIZE + (last - col);
+                SYMMETRIES[5][cell] = (last - row) * SIZE + col;
+                SYMMETRIES[6][cell] = col * SIZE + row;
+                SYMMETRIES[7][cell] = (last - col) * SIZE + (last - row);
+            }
+        }
+    }
+
+    // value << 8 | plies until the game ends, for positions with a move to make; 0 when unsolved
+    private final int[] mSolved = new int[POSITIONS];
+    private final int[] mBestMoves = new int[POSITIONS];
+
+    private PerfectPlayTableGenerator() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        write(new File(args[0]));
+    }
+
+    /**
+     * Solve every reachable position and write the table
+     *
+     * @param file
+     * @throws IOException
+     */
+    public static void write(File file) throws IOException {
+        PerfectPlayTableGenerator generator = new PerfectPlayTableGenerator();
+        generator.solve(new int[CELLS]);
+
+        int count = 0;
+        for (int rank = 0; rank < POSITIONS; rank++) {
+            if (generator.mSolved[rank] != 0 && isCanonical(rank)) {
+                count++;
+            }
+        }
+
+        File parent = file.getParentFile();
+        if (parent != null && !parent.isDirectory() && !parent.mkdirs()) {
+            throw new IOException("Could not create " + parent);
+        }
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+        try {
+            out.writeInt(MAGIC);
+            out.writeShort(VERSION);
+            out.writeInt(count);
+            for (int rank = 0; rank < POSITIONS; rank++) {
+                if (generator.mSolved[rank] != 0 && isCanonical(rank)) {
+                    out.writeShort(rank);
+                    out.writeShort(((generator.mSolved[rank] >> 8) << 9) | generator.mBestMoves[rank]);
+                }
+            }
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * Solve a position with a move to make
+     *
+     * @param cells digits of the position, 1 for the player to move
+     * @return value << 8 | plies until the game ends
+     */
+    private int solve(int[] cells) {
+        int rank = getRank(cells);
+        if (mSolved[rank] != 0) {
+            return mSolved[rank];
+        }
+        int best = 0;
+        int bestMoves = 0;
+        for (int cell = 0; cell < CELLS; cell++) {
+            if (cells[cell] != 0) {
+                continue;
+            }
+            cells[cell] = 1;
+            int outcome;
+            if (isWin(cells, cell)) {
+                outcome = (WIN << 8) | 1;
+            } else if (isDraw(cells)) {
+                outcome = (DRAW << 8) | 1;
+            } else {
+                int child = solve(swapPlayers(cells));
+                outcome = ((WIN + LOSS - (child >> 8)) << 8) | ((child & 0xFF) + 1);
+            }
+            cells[cell] = 0;
+
+            int comparison = compare(outcome, best);
+            if (best == 0 || comparison > 0) {
+                best = outcome;
+                bestMoves = 1 << cell;
+            } else if (comparison == 0) {
+                bestMoves |= 1 << cell;
+            }
+        }
+        mSolved[rank] = best;
+        mBestMoves[rank] = bestMoves;
+        return best;
+    }
+
+    /**
+     * Compare two outcomes for the player to move: wins sooner and losses later are better
+     */
+    private static int compare(int outcome, int other) {
+        int value = outcome >> 8;
+        int otherValue = other >> 8;
+        if (value != otherValue) {
+            return value - otherValue;
+        }
+        int plies = outcome & 0xFF;
+        int otherPlies = other & 0xFF;
+        if (value == WIN) {
+            return otherPlies - plies;
+        } else if (value == LOSS) {
+            return plies - otherPlies;
+        }
+        return 0;
+    }
+
+    private static boolean isWin(int[] cells, int cell) {
+        for (int[] line : LINES) {
+            if ((line[0] == cell || line[1] == cell || line[2] == cell)
+                    && cells[line[0]] == 1 && cells[line[1]] == 1 && cells[line[2]] == 1) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Every line holds squares of both players, so neither can win any more
+     */
+    private static boolean isDraw(int[] cells) {
+        for (int[] line : LINES) {
+            boolean own = false;
+            boolean opponent = false;
+            for (int cell : line) {
+                own |= cells[cell] == 1;
+                opponent |= cells[cell] == 2;
+            }
+            if (!own || !opponent) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int[] swapPlayers(int[] cells) {
+        int[] swapped = new int[CELLS];
+        for (int cell = 0; cell < CELLS; cell++) {
+            swapped[cell] = cells[cell] == 0 ? 0 : 3 - cells[cell];
+        }
+        return swapped;
+    }
+
+    private static int getRank(int[] cells) {
+        int rank = 0;
+        for (int cell = 0; cell < CELLS; cell++) {
+            rank += cells[cell] * POWERS[cell];
+        }
+        return rank;
+    }
+
+    private static boolean isCanonical(int rank) {
+        for (int symmetry = 1; symmetry < SYMMETRIES.length; symmetry++) {
+            int transformed = 0;
+            for (int cell = 0; cell < CELLS; cell++) {
+                int digit = (rank / POWERS[cell]) % 3;
+                transformed += digit * POWERS[SYMMETRIES[symmetry][cell]];
+            }
+            if (transformed < rank) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,499 @@
+package com.iantmeyer.tic_tac_toe.game;
+
+/**
+ * A square tic-tac-toe board packed into one long per player.
+ * <br><br>
+ * The square at (row, column) is stored in bit (row * size + column), so boards up to 8x8 fit.
+ * The masks of every row, column and diagonal are precomputed once per board size, which turns
+ * move generation into a few AND / popcount operations.
+ * <br><br>
+ * Each player's number of squares in every line is counted as squares are set and cleared, along
+ * with the number of lines still open to at least one player. A win is a line count reaching the
+ * board size, and a draw is no open line left, so both checks only look at the lines through the
+ * square being played.
+ * <br><br>
+ * The same counts give an open-lines evaluation: every line which only one player has squares in
+ * is worth the line weight of its squares to that player. The evaluation is kept up to date with
+ * the counts, so reading it takes constant time.
+ * <br><br>
+ * A Zobrist hash of the squares is kept up to date on every change, for the board itself and
+ * for each of its 8 rotations and reflections. The smallest of these is the canonical hash, which
+ * is equal for every position in the same symmetry class.
+ */
+public final class BitBoard {
+
+    /**
+     * The largest board which fits into a single long per player
+     */
+    public static final int MAX_SIZE = 8;
+
+    /**
+     * The number of rotations and reflections of a square board, including the identity
+     */
+    public static final int SYMMETRY_COUNT = 8;
+
+    private static final Lines[] LINES = new Lines[MAX_SIZE + 1];
+
+    private final Lines mLines;
+    private long mPlayer1Bits;
+    private long mPlayer2Bits;
+    private final long[] mHashes = new long[SYMMETRY_COUNT];
+    private final byte[] mPlayer1LineCounts;
+    private final byte[] mPlayer2LineCounts;
+    private int mOpenLines;
+    private int mEvaluation;    // for player 1
+
+    /**
+     * An empty board
+     *
+     * @param size number of rows and columns, 1 to MAX_SIZE
+     */
+    public BitBoard(int size) {
+        mLines = getLines(size);
+        mPlayer1LineCounts = new byte[mLines.lineMasks.length];
+        mPlayer2LineCounts = new byte[mLines.lineMasks.length];
+        mOpenLines = mLines.lineMasks.length;
+        for (int symmetry = 0; symmetry < SYMMETRY_COUNT; symmetry++) {
+            mHashes[symmetry] = Zobrist.getSizeKey(size);
+        }
+    }
+
+    /**
+     * A copy of another board
+     *
+     * @param other
+     */
+    public BitBoard(BitBoard other) {
+        mLines = other.mLines;
+        mPlayer1Bits = other.mPlayer1Bits;
+        mPlayer2Bits = other.mPlayer2Bits;
+        System.arraycopy(other.mHashes, 0, mHashes, 0, SYMMETRY_COUNT);
+        mPlayer1LineCounts = other.mPlayer1LineCounts.clone();
+        mPlayer2LineCounts = other.mPlayer2LineCounts.clone();
+        mOpenLines = other.mOpenLines;
+        mEvaluation = other.mEvaluation;
+    }
+
+    /**
+     * Pack an array board, where 0 is an empty square and 1, 2 the player controlling a square
+     *
+     * @param board a square board no larger than MAX_SIZE
+     * @return
+     */
+    public static BitBoard fromArray(int[][] board) {
+        BitBoard bitBoard = new BitBoard(board.length);
+        for (int row = 0; row < board.length; row++) {
+            for (int col = 0; col < board.length; col++) {
+                if (board[row][col] != 0) {
+                    bitBoard.set(bitBoard.getCell(row, col), board[row][col]);
+                }
+            }
+        }
+        return bitBoard;
+    }
+
+    /**
+     * Whether or not a board of this size can be packed
+     *
+     * @param size
+     * @return
+     */
+    public static boolean isSupportedSize(int size) {
+        return 0 < size && size <= MAX_SIZE;
+    }
+
+    /**
+     * Unpack the board into a new array
+     * <br>
+     * 0 => empty square
+     * <br>
+     * 1, 2 => the player controlling a square
+     */
+    public int[][] toArray() {
+        int size = mLines.size;
+        int[][] board = new int[size][size];
+        for (int row = 0; row < size; row++) {
+            for (int col = 0; col < size; col++) {
+                board[row][col] = getPlayerAt(getCell(row, col));
+            }
+        }
+        return board;
+    }
+
+    public int getSize() {
+        return mLines.size;
+    }
+
+    public int getCellCount() {
+        return mLines.size * mLines.size;
+    }
+
+    /**
+     * The bit index of a square
+     *
+     * @param row
+     * @param column
+     * @return
+     */
+    public int getCell(int row, int column) {
+        return row * mLines.size + column;
+    }
+
+    public int getRow(int cell) {
+        return cell / mLines.size;
+    }
+
+    public int getColumn(int cell) {
+        return cell % mLines.size;
+    }
+
+    /**
+     * The player controlling a square
+     *
+     * @param cell
+     * @return 0 for an empty square, otherwise 1 or 2
+     */
+    public int getPlayerAt(int cell) {
+        long bit = 1L << cell;
+        if ((mPlayer1Bits & bit) != 0) {
+            return 1;
+        } else if ((mPlayer2Bits & bit) != 0) {
+            return 2;
+        }
+        return 0;
+    }
+
+    /**
+     * The squares controlled by a player
+     *
+     * @param player 1 or 2
+     * @return
+     */
+    public long getPlayerBits(int player) {
+        return player == 1 ? mPlayer1Bits : mPlayer2Bits;
+    }
+
+    /**
+     * The squares which are still empty
+     *
+     * @return
+     */
+    public long getEmptyBits() {
+        return mLines.fullMask & ~(mPlayer1Bits | mPlayer2Bits);
+    }
+
+    public int getEmptyCount() {
+        return Long.bitCount(getEmptyBits());
+    }
+
+    public boolean isEmpty(int cell) {
+        return ((mPlayer1Bits | mPlayer2Bits) & (1L << cell)) == 0;
+    }
+
+    /**
+     * The Zobrist hash of the board size and squares
+     *
+     * @return
+     */
+    public long getHash() {
+        return mHashes[0];
+    }
+
+    /**
+     * The Zobrist hash of the board transformed by one of its symmetries
+     *
+     * @param symmetry 0 to SYMMETRY_COUNT - 1, where 0 is the identity
+     * @return
+     */
+    public long getHash(int symmetry) {
+        return mHashes[symmetry];
+    }
+
+    /**
+     * The smallest hash among every rotation and reflection of the board.
+     * <br><br>
+     * Boards which are rotations or reflections of each other have the same canonical hash.
+     *
+     * @return
+     */
+    public long getCanonicalHash() {
+        return mHashes[getCanonicalSymmetry()];
+    }
+
+    /**
+     * The symmetry which transforms the board into its canonical form
+     *
+     * @return 0 to SYMMETRY_COUNT - 1
+     */
+    public int getCanonicalSymmetry() {
+        int canonical = 0;
+        for (int symmetry = 1; symmetry < SYMMETRY_COUNT; symmetry++) {
+            if (mHashes[symmetry] < mHashes[canonical]) {
+                canonical = symmetry;
+            }
+        }
+        return canonical;
+    }
+
+    /**
+     * The square a square is moved to by a symmetry
+     *
+     * @param cell
+     * @param symmetry 0 to SYMMETRY_COUNT - 1
+     * @return
+     */
+    public int transformCell(int cell, int symmetry) {
+        return mLines.symmetries[symmetry][cell];
+    }
+
+    /**
+     * The square which a symmetry moves onto a square
+     *
+     * @param cell
+     * @param symmetry 0 to SYMMETRY_COUNT - 1
+     * @return
+     */
+    public int inverseTransformCell(int cell, int symmetry) {
+        return mLines.inverseSymmetries[symmetry][cell];
+    }
+
+    /**
+     * Give a square to a player
+     *
+     * @param cell
+     * @param player 1 or 2
+     */
+    public void set(int cell, int player) {
+        clear(cell);
+        updateHashes(cell, player);
+        byte[] counts = player == 1 ? mPlayer1LineCounts : mPlayer2LineCounts;
+        byte[] opponentCounts = player == 1 ? mPlayer2LineCounts : mPlayer1LineCounts;
+        int[] lines = mLines.cellLines[cell];
+        for (int idx = 0; idx < lines.length; idx++) {
+            int line = lines[idx];
+            mEvaluation -= getLineValue(line);
+            if (counts[line]++ == 0 && opponentCounts[line] != 0) {
+                mOpenLines--;   // the line now holds squares of both players
+            }
+            mEvaluation += getLineValue(line);
+        }
+        if (player == 1) {
+            mPlayer1Bits |= 1L << cell;
+        } else {
+            mPlayer2Bits |= 1L << cell;
+        }
+    }
+
+    /**
+     * Empty a square
+     *
+     * @param cell
+     */
+    public void clear(int cell) {
+        int player = getPlayerAt(cell);
+        if (player != 0) {
+            updateHashes(cell, player);
+            byte[] counts = player == 1 ? mPlayer1LineCounts : mPlayer2LineCounts;
+            byte[] opponentCounts = player == 1 ? mPlayer2LineCounts : mPlayer1LineCounts;
+            int[] lines = mLines.cellLines[cell];
+            for (int idx = 0; idx < lines.length; idx++) {
+                int line = lines[idx];
+                mEvaluation -= getLineValue(line);
+                if (--counts[line] == 0 && opponentCounts[line] != 0) {
+                    mOpenLines++;
+                }
+                mEvaluation += getLineValue(line);
+            }
+        }
+        long mask = ~(1L << cell);
+        mPlayer1Bits &= mask;
+        mPlayer2Bits &= mask;
+    }
+
+    /**
+     * Whether or not the player would control an entire line after taking the square
+     *
+     * @param cell   an empty square
+     * @param player 1 or 2
+     * @return
+     */
+    public boolean isWinningMove(int cell, int player) {
+        byte[] counts = player == 1 ? mPlayer1LineCounts : mPlayer2LineCounts;
+        int[] lines = mLines.cellLines[cell];
+        for (int idx = 0; idx < lines.length; idx++) {
+            if (counts[lines[idx]] == mLines.size - 1) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Whether or not every line is blocked for both players after the player takes the square
+     *
+     * @param cell   an empty square
+     * @param player 1 or 2
+     * @return
+     */
+    public boolean isDrawMove(int cell, int player) {
+        byte[] counts = player == 1 ? mPlayer1LineCounts : mPlayer2LineCounts;
+        byte[] opponentCounts = player == 1 ? mPlayer2LineCounts : mPlayer1LineCounts;
+        int blockedLines = 0;
+        int[] lines = mLines.cellLines[cell];
+        for (int idx = 0; idx < lines.length; idx++) {
+            if (counts[lines[idx]] == 0 && opponentCounts[lines[idx]] != 0) {
+                blockedLines++;
+            }
+        }
+        return mOpenLines == blockedLines;
+    }
+
+    /**
+     * The number of lines which do not yet hold squares of both players
+     *
+     * @return
+     */
+    public int getOpenLineCount() {
+        return mOpenLines;
+    }
+
+    /**
+     * The open-lines evaluation of the board: the weights of the lines only the player has squares
+     * in, less the weights of the lines only the opponent has squares in
+     *
+     * @param player 1 or 2
+     * @return
+     */
+    public int getEvaluation(int player) {
+        return player == 1 ? mEvaluation : -mEvaluation;
+    }
+
+    /**
+     * The value of a line to player 1
+     */
+    private int getLineValue(int line) {
+        int player1Count = mPlayer1LineCounts[line];
+        int player2Count = mPlayer2LineCounts[line];
+        if (player2Count == 0) {
+            return mLines.lineWeights[player1Count];
+        } else if (player1Count == 0) {
+            return -mLines.lineWeights[player2Count];
+        }
+        return 0;
+    }
+
+    /**
+     * The number of lines which pass through a square
+     *
+     * @param cell
+     * @return 2 to 4
+     */
+    public int getLineCount(int cell) {
+        return mLines.cellLines[cell].length;
+    }
+
+    private void updateHashes(int cell, int player) {
+        int[][] symmetries = mLines.symmetries;
+        for (int symmetry = 0; symmetry < SYMMETRY_COUNT; symmetry++) {
+            mHashes[symmetry] ^= Zobrist.getSquareKey(symmetries[symmetry][cell], player);
+        }
+    }
+
+    private static long getPower(int base, int exponent) {
+        long power = 1;
+        for (int idx = 0; idx < exponent; idx++) {
+            power *= base;
+        }
+        return power;
+    }
+
+    private static synchronized Lines getLines(int size) {
+        if (!isSupportedSize(size)) {
+            throw new IllegalArgumentException("BitBoard supports sizes 1 to " + MAX_SIZE + ": " + size + " is invalid");
+        }
+        if (LINES[size] == null) {
+            LINES[size] = new Lines(size);
+        }
+        return LINES[size];
+    }
+
+    /**
+     * The precomputed line masks and symmetries for one board size, shared by every board of that size
+     */
+    private static final class Lines {
+        private final int size;
+        private final long fullMask;
+        private final long[] lineMasks;
+        private final int[][] cellLines;
+        private final int[][] symmetries;
+        private final int[][] inverseSymmetries;
+        private final int[] lineWeights;
+
+        Lines(int size) {
+            this.size = size;
+            int cellCount = size * size;
+            fullMask = cellCount == 64 ? -1L : (1L << cellCount) - 1;
+
+            // rows, columns, diagonal, reverse diagonal
+            lineMasks = new long[2 * size + 2];
+            for (int idx = 0; idx < size; idx++) {
+                for (int other = 0; other < size; other++) {
+                    lineMasks[idx] |= 1L << (idx * size + other);
+                    lineMasks[size + idx] |= 1L << (other * size + idx);
+                }
+                lineMasks[2 * size] |= 1L << (idx * size + idx);
+                lineMasks[2 * size + 1] |= 1L << (idx * size + size - idx - 1);
+            }
+
+            // The value of a line by the number of squares a player has in it, when the opponent
+            // has none. Each extra square is worth 8 times more, so one line close to completion
+            // outweighs several lines which have just been started. On the largest boards that
+            // would let every line one square short of a win add up beyond GameAi's heuristic
+            // limit, where scores are clamped, so the factor shrinks to keep them below it.
+            int factor = 8;
+            while (factor > 2 && lineMasks.length * getPower(factor, size - 2) >= GameAi.HEURISTIC_LIMIT) {
+                factor--;
+            }
+            lineWeights = new int[size + 1];
+            for (int squares = 1; squares <= size; squares++) {
+                lineWeights[squares] = (int) getPower(factor, squares - 1);
+            }
+
+            cellLines = new int[cellCount][];
+            for (int cell = 0; cell < cellCount; cell++) {
+                int count = 0;
+                int[] lines = new int[4];
+                for (int line = 0; line < lineMasks.length; line++) {
+                    if ((lineMasks[line] & (1L << cell)) != 0) {
+                        lines[count++] = line;
+                    }
+                }
+                cellLines[cell] = new int[count];
+                System.arraycopy(lines, 0, cellLines[cell], 0, count);
+            }
+
+            // identity, 3 rotations, 4 reflections
+            symmetries = new int[SYMMETRY_COUNT][cellCount];
+            inverseSymmetries = new int[SYMMETRY_COUNT][cellCount];
+            int last = size - 1;
+            for (int row = 0; row < size; row++) {
+                for (int col = 0; col < size; col++) {
+                    int cell = row * size + col;
+                    symmetries[0][cell] = cell;
+                    symmetries[1][cell] = col * size + (last - row);
+                    symmetries[2][cell] = (last - row) * size + (last - col);
+                    symmetries[3][cell] = (last - col) * size + row;
+                    symmetries[4][cell] = row * size + (last - col);
+                    symmetries[5][cell] = (last - row) * size + col;
+                    symmetries[6][cell] = col * size + row;
+                    symmetries[7][cell] = (last - col) * size + (last - row);
+                }
+            }
+            for (int symmetry = 0; symmetry < SYMMETRY_COUNT; symmetry++) {
+                for (int cell = 0; cell < cellCount; cell++) {
+                    inverseSymmetries[symmetry][symmetries[symmetry][cell]] = cell;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package com.iantmeyer.tic_tac_toe.game;
+
+/**
+ * Publishes game engine events, such as GameAi.AiFinishEvent and TicTacToeGame.GameMoveEvent
+ * <br><br>
+ * Events go to a pluggable Events.Poster, the Android app plugs in its event bus. Without a
+ * poster events are dropped, the engine itself never depends on them being delivered.
+ */
+public final class Events {
+
+    /**
+     * A destination for engine events
+     */
+    public interface Poster {
+        void post(Object event);
+    }
+
+    private static volatile Poster mPoster;
+
+    private Events() {
+        // discourage instantiation
+    }
+
+    /**
+     * Set where events are posted
+     *
+     * @param poster the poster, or null to drop events
+     */
+    public static void setPoster(Poster poster) {
+        mPoster = poster;
+    }
+
+    static void post(Object event) {
+        Poster poster = mPoster;
+        if (poster != null) {
+            poster.post(event);
+        }
+    }
+}
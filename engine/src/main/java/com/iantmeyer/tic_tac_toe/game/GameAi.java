@@ -0,0 +1,1365 @@
+package com.iantmeyer.tic_tac_toe.game;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * This class will perform a recursive negamax search with alpha-beta pruning to determine the best
+ * available move for a game.
+ * <br><br>
+ * The root moves and the first ply below them are split across a ForkJoinPool. The first move of
+ * each split node is searched alone to establish a bound, then its siblings are searched in parallel.
+ * Scores are merged in move order, so the result does not depend on thread timing.
+ * <br><br>
+ * Games may choose Monte Carlo tree search instead, see Strategy.
+ * <br><br>
+ * The static configuration serves a single app playing one game at a time. To search for many
+ * games at once, each with its own configuration, use a GameAiService.
+ * <br><br>
+ * The game must implement GameAiInterface and have moves which implement MoveInterface
+ */
+public class GameAi {
+    private static final String TAG = "GameAi";
+
+    // A win on the move at search depth d scores WIN_SCORE - d, so that faster wins and slower
+    // losses score better. Heuristic scores stay within HEURISTIC_LIMIT, below any decisive score.
+    static final int WIN_SCORE = 1000000;
+    static final int DRAW_SCORE = 0;
+    private static final int INFINITY = WIN_SCORE + 1;
+    static final int HEURISTIC_LIMIT = WIN_SCORE / 2;
+    static final long DEFAULT_TABLE_BYTES = 4 * 1024 * 1024;
+    // the deepest negamax node split across the pool, the root's children are at depth 1
+    private static final int PARALLEL_SPLIT_DEPTH = 1;
+    static final int DEFAULT_MONTE_CARLO_PLAYOUTS = 10000;
+    private static final int PONDER_PLAYOUT_FACTOR = 4;
+
+    private static final Executor DIRECT_EXECUTOR = new Executor() {
+        @Override
+        public void execute(Runnable runnable) {
+            runnable.run();
+        }
+    };
+
+    private static final AtomicLong mNextGameId = new AtomicLong();
+    private static final Executor DEFAULT_BACKGROUND_EXECUTOR = createBackgroundExecutor();
+    private static Executor mBackgroundExecutor = DEFAULT_BACKGROUND_EXECUTOR;
+    private static Executor mCallbackExecutor = DIRECT_EXECUTOR;
+    private static int mMaxDepth = -1;
+    private static boolean mMoveOrdering = true;
+    private static int mMonteCarloPlayouts = DEFAULT_MONTE_CARLO_PLAYOUTS;
+    private static TranspositionTable mTable = new TranspositionTable(DEFAULT_TABLE_BYTES);
+    private static final Random mRandom = new Random();
+    private static ForkJoinPool mPool = createPool(Runtime.getRuntime().availableProcessors());
+    private static volatile double mTableHitRate;
+    private static volatile int mReusedPlayouts;
+    private static boolean mPondering = false;
+    private static volatile PonderedTree mPonderedTree;
+    private static volatile Tablebase mTablebase;
+
+    private GameAi() {
+        // discourage instantiation
+    }
+
+    /**
+     * How a game wants its moves to be found, see GameAiInterface.getAiStrategy()
+     */
+    public enum Strategy {
+        /**
+         * Negamax search with alpha-beta pruning, exact up to the maximum depth
+         */
+        MINIMAX,
+        /**
+         * Monte Carlo tree search, for games too large to search exactly
+         */
+        MONTE_CARLO
+    }
+
+    /**
+     * Set the maximum depth allowed by the minimax algorithm recursion.
+     * <p/>
+     * At this depth, getGameValue() will be used, rather than continue recursion.
+     *
+     * @param maxDepth
+     */
+    public static void with(int maxDepth) {
+        mMaxDepth = maxDepth;
+    }
+
+    /**
+     * Set whether or not moves are searched in order of GameAiInterface.getMovePriority()
+     * <p/>
+     * Searching strong moves first lets alpha-beta pruning cut off more of the tree.
+     *
+     * @param moveOrdering
+     */
+    public static void withMoveOrdering(boolean moveOrdering) {
+        mMoveOrdering = moveOrdering;
+    }
+
+    /**
+     * Set the number of playouts of a Monte Carlo tree search without a time budget
+     *
+     * @param playouts
+     */
+    public static void withMonteCarloPlayouts(int playouts) {
+        mMonteCarloPlayouts = Math.max(1, playouts);
+    }
+
+    /**
+     * Set the memory cap of the transposition table which caches searched positions
+     * <p/>
+     * The table is reallocated, forgetting every cached position. A cap of 0 disables the table.
+     *
+     * @param maxBytes
+     */
+    public static void withTranspositionTableSize(long maxBytes) {
+        mTable = maxBytes > 0 ? new TranspositionTable(maxBytes) : null;
+    }
+
+    /**
+     * Forget every cached position, without reallocating the transposition table
+     */
+    public static void clearTranspositionTable() {
+        if (mTable != null) {
+            mTable.clear();
+        }
+    }
+
+    /**
+     * The fraction of transposition table probes which hit during the last search
+     *
+     * @return 0 to 1
+     */
+    public static double getTranspositionTableHitRate() {
+        return mTableHitRate;
+    }
+
+    /**
+     * The playouts the last Monte Carlo tree search continued from, pondered before the move it
+     * replied to
+     *
+     * @return 0 when the search started a new tree
+     */
+    static int getReusedPlayouts() {
+        return mReusedPlayouts;
+    }
+
+    /**
+     * Set the number of threads searching in parallel
+     * <p/>
+     * Monte Carlo tree searches run one worker per thread, all sharing one tree.
+     * <p/>
+     * Defaults to the number of available processors. A parallelism of 1 searches on the calling thread.
+     *
+     * @param parallelism
+     */
+    public static void withParallelism(int parallelism) {
+        if (mPool != null) {
+            mPool.shutdown();
+        }
+        mPool = createPool(parallelism);
+    }
+
+    private static ForkJoinPool createPool(int parallelism) {
+        return parallelism > 1 ? new ForkJoinPool(parallelism) : null;
+    }
+
+    /**
+     * Seed the random number generator which breaks ties between equally good moves
+     * <p/>
+     * By default it is seeded differently every run. A fixed seed makes the moves chosen by a
+     * single threaded search repeatable, e.g. for tests and benchmarks.
+     *
+     * @param seed
+     */
+    public static void withRandomSeed(long seed) {
+        mRandom.setSeed(seed);
+    }
+
+    /**
+     * Set the tablebase which games of its board size look their moves up in, rather than search
+     *
+     * @param tablebase the tablebase, see Tablebase.open(), or null to search
+     */
+    public static void withTablebase(Tablebase tablebase) {
+        mTablebase = tablebase;
+    }
+
+    static Tablebase getTablebase() {
+        return mTablebase;
+    }
+
+    /**
+     * Set whether games search while the human player is thinking, see ponder()
+     *
+     * @param pondering
+     */
+    public static void withPondering(boolean pondering) {
+        mPondering = pondering;
+    }
+
+    public static boolean isPondering() {
+        return mPondering;
+    }
+
+    /**
+     * Set the executors which run the search and deliver its result
+     * <p/>
+     * By default the search runs on a single background thread, and the result is delivered on
+     * that same thread.
+     *
+     * @param backgroundExecutor runs the search, off the caller's thread
+     * @param callbackExecutor   delivers the AiFinishEvent, e.g. on a UI thread
+     */
+    public static void withExecutors(Executor backgroundExecutor, Executor callbackExecutor) {
+        mBackgroundExecutor = backgroundExecutor;
+        mCallbackExecutor = callbackExecutor;
+    }
+
+    /**
+     * Restore the default executors, see withExecutors()
+     */
+    static void withDefaultExecutors() {
+        withExecutors(DEFAULT_BACKGROUND_EXECUTOR, DIRECT_EXECUTOR);
+    }
+
+    private static Executor createBackgroundExecutor() {
+        return Executors.newSingleThreadExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, TAG);
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    /**
+     * A new id for GameAiInterface.getGameId(), unique within the process
+     *
+     * @return
+     */
+    public static long newGameId() {
+        return mNextGameId.incrementAndGet();
+    }
+
+    /**
+     * The AI will calculate the best available next move for the game provided
+     *
+     * @param game
+     * @return a handle to cancel the search with
+     */
+    public static SearchHandle makeAiMove(GameAiInterface game) {
+        return makeAiMove(game, 0);
+    }
+
+    /**
+     * The AI will calculate the best available next move for the game provided, within a time budget
+     * <p/>
+     * The search deepens one ply at a time, using getGameValue() at the depth limit, until the
+     * budget runs out. The best move of the deepest completed search is played.
+     * <p/>
+     * A Monte Carlo tree search runs playouts until the budget runs out instead.
+     * <p/>
+     * The move is delivered to game.onAiFinishEvent(), unless the search is cancelled first.
+     *
+     * @param game
+     * @param timeBudgetMillis the time budget, or 0 to search to the maximum depth set by with(),
+     *                         or for the number of playouts set by withMonteCarloPlayouts()
+     * @return a handle to cancel the search with
+     */
+    public static SearchHandle makeAiMove(GameAiInterface game, long timeBudgetMillis) {
+        SearchHandle handle = new SearchHandle(game.getGameId(), game.getGeneration());
+        Events.post(new AiStartEvent(game.getNextPlayer()));
+        mBackgroundExecutor.execute(new BestMoveTask(game, timeBudgetMillis, handle));
+        return handle;
+    }
+
+    /**
+     * The AI will calculate the best reply to a move just made by the other player
+     * <p/>
+     * If the game was pondered before the move, the search continues from what was pondered.
+     *
+     * @param game
+     * @param lastMove the move which made the game's current position
+     * @return a handle to cancel the search with
+     */
+    public static SearchHandle makeAiMove(GameAiInterface game, MoveInterface lastMove) {
+        SearchHandle handle = new SearchHandle(game.getGameId(), game.getGeneration());
+        Events.post(new AiStartEvent(game.getNextPlayer()));
+        mBackgroundExecutor.execute(new BestMoveTask(game, 0, handle, lastMove));
+        return handle;
+    }
+
+    /**
+     * Search the game while the other player, a human, decides on their move, until cancelled
+     * <p/>
+     * No move is delivered. A negamax search fills the transposition table with the positions the
+     * AI will search after any reply. A Monte Carlo tree search keeps its tree, and the search
+     * started by makeAiMove(game, lastMove) continues from the subtree of the move played.
+     * <p/>
+     * Cancel the handle as soon as the human moves, so that the AI's own search can start.
+     *
+     * @param game a game whose next player is human, and whose following player is the AI
+     * @return a handle to stop pondering with
+     */
+    public static SearchHandle ponder(GameAiInterface game) {
+        SearchHandle handle = new SearchHandle(game.getGameId(), game.getGeneration());
+        // copied now, as the human may move before the background executor gets to it
+        mBackgroundExecutor.execute(new PonderTask(game.createSearchCopy(), handle));
+        return handle;
+    }
+
+    /**
+     * Event published when Game AI begins
+     */
+    public static class AiStartEvent {
+        public final int player;
+
+        AiStartEvent(int player) {
+            this.player = player;
+        }
+    }
+
+    /**
+     * Event published when Game AI finishes calculations
+     * <br><br>
+     * The event is tagged with the game it was searched for, and the generation of that game when
+     * the search started. A game which has changed since should ignore it.
+     * <br><br>
+     * The move is null when the search failed, so that the game is not left waiting on the AI.
+     */
+    public static class AiFinishEvent {
+        public final MoveInterface move;
+        public final long gameId;
+        public final int generation;
+
+        AiFinishEvent(MoveInterface move, long gameId, int generation) {
+            this.move = move;
+            this.gameId = gameId;
+            this.generation = generation;
+        }
+    }
+
+    /**
+     * Searches on the background executor, then delivers the move on the callback executor,
+     * first to the game and then to any other listeners through Events
+     */
+    private static class BestMoveTask implements Runnable {
+        private final GameAiInterface mGame;
+        private final long mTimeBudgetMillis;
+        private final SearchHandle mHandle;
+        private final MoveInterface mLastMove;
+
+        BestMoveTask(GameAiInterface game, long timeBudgetMillis, SearchHandle handle) {
+            this(game, timeBudgetMillis, handle, null);
+        }
+
+        BestMoveTask(GameAiInterface game, long timeBudgetMillis, SearchHandle handle, MoveInterface lastMove) {
+            mGame = game;
+            mTimeBudgetMillis = timeBudgetMillis;
+            mHandle = handle;
+            mLastMove = lastMove;
+        }
+
+        @Override
+        public void run() {
+            if (mHandle.isCancelled()) {
+                // cancelled while waiting for the executor, never start searching
+                mHandle.finish();
+                return;
+            }
+            MoveInterface bestMove;
+            try {
+                bestMove = getBestMove(mGame, getConfig(mTimeBudgetMillis), mTable, mPool, mRandom, mHandle, mLastMove);
+            } catch (RuntimeException e) {
+                Log.e(TAG, "The Game Ai failed to find a move", e);
+                // the game waits for the AI since AiStartEvent, deliver the failure
+                bestMove = null;
+            }
+            final MoveInterface move = bestMove;
+            if (move == null && mHandle.isCancelled()) {
+                Log.i(TAG, "Search cancelled");
+                mHandle.finish();
+                return;
+            }
+            mCallbackExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    onPostExecute(move);
+                }
+            });
+        }
+
+        /**
+         * @param move the move, or null when the search failed
+         */
+        private void onPostExecute(MoveInterface move) {
+            // the game may start the next AI move, e.g. when the computer plays both sides
+            mHandle.finish();
+            if (mHandle.isCancelled()) {
+                Log.i(TAG, "Dropped the move of a cancelled search");
+                return;
+            }
+            deliverMove(mGame, mHandle, move);
+        }
+    }
+
+    /**
+     * Searches a copy of the game on the background executor until cancelled
+     */
+    private static class PonderTask implements Runnable {
+        private final GameAiInterface mGame;
+        private final SearchHandle mHandle;
+
+        PonderTask(GameAiInterface game, SearchHandle handle) {
+            mGame = game;
+            mHandle = handle;
+        }
+
+        @Override
+        public void run() {
+            try {
+                if (!mHandle.isCancelled() && mGame.getSolvedMove(mRandom) == null) {
+                    ponder();
+                }
+            } catch (RuntimeException e) {
+                Log.e(TAG, "The Game Ai failed to ponder", e);
+            } finally {
+                mHandle.finish();
+            }
+        }
+
+        private void ponder() {
+            if (mGame.getAiStrategy() == Strategy.MONTE_CARLO) {
+                MonteCarloTreeSearch search = new MonteCarloTreeSearch(mGame, mRandom);
+                search.search(mMonteCarloPlayouts * PONDER_PLAYOUT_FACTOR, 0, mPool, mHandle);
+                // only kept once the workers have stopped, so the next search has it to itself
+                mPonderedTree = new PonderedTree(search, mHandle.getGameId(), mHandle.getGeneration());
+                Log.i(TAG, "Pondered " + search.getPlayouts() + " playouts");
+            } else if (mTable != null) {
+                int[] availableMoves = getRootMoves(mGame, mMoveOrdering);
+                mTable.newSearch();
+                try {
+                    // one ply deeper than the AI will search after the reply
+                    searchIteratively(mGame, availableMoves, mMoveOrdering, mTable, mPool,
+                            mMaxDepth < 0 ? -1 : mMaxDepth + 1, 0, mHandle);
+                } catch (SearchAbortedException e) {
+                    Log.i(TAG, "Stopped pondering");
+                }
+            }
+        }
+    }
+
+    /**
+     * The tree of the last Monte Carlo ponder, and the game and generation it was pondered for
+     */
+    private static final class PonderedTree {
+        final MonteCarloTreeSearch search;
+        final long gameId;
+        final int generation;
+
+        PonderedTree(MonteCarloTreeSearch search, long gameId, int generation) {
+            this.search = search;
+            this.gameId = gameId;
+            this.generation = generation;
+        }
+    }
+
+    /**
+     * Take the pondered subtree of the move which made the game's position, if there is one
+     *
+     * @param game the search copy the subtree will be searched with
+     * @return the search, or null to start a new one
+     */
+    private static MonteCarloTreeSearch takePonderedTree(GameAiInterface game, MoveInterface lastMove,
+                                                         Random random) {
+        PonderedTree ponderedTree = mPonderedTree;
+        mPonderedTree = null;
+        if (ponderedTree == null || ponderedTree.gameId != game.getGameId()
+                || ponderedTree.generation != game.getGeneration() - 1) {
+            return null;
+        }
+        return ponderedTree.search.getSubtree(lastMove, game, random);
+    }
+
+    /**
+     * Deliver the move of a search which has not been cancelled, first to the game and then to any
+     * other listeners through Events
+     */
+    static void deliverMove(GameAiInterface game, SearchHandle handle, MoveInterface move) {
+        if (move != null) {
+            Log.i(TAG, "Found best move for player: " + move.getPlayer());
+        }
+        AiFinishEvent aiFinishEvent = new AiFinishEvent(move, handle.getGameId(), handle.getGeneration());
+        game.onAiFinishEvent(aiFinishEvent);
+        Events.post(aiFinishEvent);
+    }
+
+    static MoveInterface getBestMove(GameAiInterface game) {
+        return getBestMove(game, 0);
+    }
+
+    static MoveInterface getBestMove(GameAiInterface game, long timeBudgetMillis) {
+        return getBestMove(game, timeBudgetMillis, null);
+    }
+
+    /**
+     * @param handle checked for cancellation while searching, or null
+     * @return the move, or null when the search was cancelled
+     */
+    static MoveInterface getBestMove(GameAiInterface game, long timeBudgetMillis, SearchHandle handle) {
+        return getBestMove(game, getConfig(timeBudgetMillis), mTable, mPool, mRandom, handle, null);
+    }
+
+    /**
+     * The static configuration, as set by with() and the other with methods
+     */
+    private static SearchConfig getConfig(long timeBudgetMillis) {
+        return new SearchConfig(mMaxDepth, timeBudgetMillis, mMoveOrdering, mMonteCarloPlayouts);
+    }
+
+    /**
+     * Search with an explicit configuration, rather than the static one
+     *
+     * @param table  the transposition table, or null to search without one
+     * @param pool   the pool to split the search across, or null to search on the calling thread
+     * @param random   breaks ties between equally good moves
+     * @param handle   checked for cancellation while searching, or null
+     * @param lastMove the move which made the game's position, to continue a pondered search, or null
+     * @return the move, or null when the search was cancelled
+     */
+    static MoveInterface getBestMove(GameAiInterface game, SearchConfig config, TranspositionTable table,
+                                     ForkJoinPool pool, Random random, SearchHandle handle,
+                                     MoveInterface lastMove) {
+        long timeBudgetMillis = config.timeBudgetMillis;
+        MoveInterface solvedMove = game.getSolvedMove(random);
+        if (solvedMove != null) {
+            Log.i(TAG, "Found solved move without searching");
+            return solvedMove;
+        }
+
+        // the whole search makes and unmakes moves on this one copy, which an aborted search
+        // leaves part way down a line, so moves are decoded on the game itself
+        GameAiInterface searchGame = game.createSearchCopy();
+
+        if (game.getAiStrategy() == Strategy.MONTE_CARLO) {
+            MonteCarloTreeSearch search = lastMove != null ? takePonderedTree(searchGame, lastMove, random) : null;
+            if (search == null) {
+                search = new MonteCarloTreeSearch(searchGame, random);
+            }
+            mReusedPlayouts = search.getRootVisits();
+            if (timeBudgetMillis > 0) {
+                return search.search(0, System.nanoTime() + timeBudgetMillis * 1000000, pool, handle);
+            }
+            return search.search(config.monteCarloPlayouts, 0, pool, handle);
+        }
+
+        int[] availableMoves = getRootMoves(searchGame, config.moveOrdering);
+        if (table != null) {
+            table.newSearch();
+        }
+        int[] bestMoves;
+        try {
+            if (timeBudgetMillis > 0) {
+                bestMoves = searchIteratively(searchGame, availableMoves, config.moveOrdering, table, pool, -1,
+                        System.nanoTime() + timeBudgetMillis * 1000000, handle);
+            } else {
+                bestMoves = searchRoot(searchGame, availableMoves,
+                        new Search(config.maxDepth, config.moveOrdering, table, 0, handle, pool));
+            }
+        } catch (SearchAbortedException e) {
+            return null;
+        }
+        if (handle != null && handle.isCancelled()) {
+            return null;
+        }
+
+        if (bestMoves.length == 1) {
+            return game.decodeMove(bestMoves[0]);
+        } else {
+            // Randomly select among equally valued moves, to keep things feeling fresh
+            int randomIdx = random.nextInt(bestMoves.length);
+            return game.decodeMove(bestMoves[randomIdx]);
+        }
+    }
+
+    /**
+     * The available moves of the game's root position, strongest first when ordering moves
+     */
+    private static int[] getRootMoves(GameAiInterface game, boolean moveOrdering) {
+        int[] moves = new int[game.getMaxMoveCount()];
+        moves = Arrays.copyOf(moves, game.getAvailableMoves(moves));
+        if (moveOrdering) {
+            orderMoves(game, moves, moves.length, new int[moves.length]);
+        }
+        return moves;
+    }
+
+    /**
+     * Search one ply deeper at a time until the deadline passes or the result is certain
+     *
+     * @param maxDepth      the deepest search, or -1 for no limit
+     * @param deadlineNanos System.nanoTime() at which to stop deepening, or 0 for no deadline
+     * @return the best moves of the deepest completed search
+     */
+    private static int[] searchIteratively(GameAiInterface game,
+                                           int[] availableMoves,
+                                           boolean moveOrdering,
+                                           TranspositionTable table,
+                                           ForkJoinPool pool,
+                                           int maxDepth,
+                                           long deadlineNanos,
+                                           SearchHandle handle) {
+        // the first iteration is a single ply and always completes unless cancelled, so there is a move to play
+        Search search = new Search(0, moveOrdering, table, 0, handle, pool);
+        int[] bestMoves = searchRoot(game, availableMoves, search);
+        int depth = 0;
+        while (depth + 1 < availableMoves.length && (maxDepth < 0 || depth < maxDepth)
+                && !isDecisiveScore(search.rootScore)) {
+            // search the best moves of the last iteration first, they are the most likely to cause cutoffs
+            moveToFront(availableMoves, bestMoves);
+
+            search = new Search(depth + 1, moveOrdering, table, deadlineNanos, handle, pool);
+            try {
+                bestMoves = searchRoot(game, availableMoves, search);
+            } catch (SearchAbortedException e) {
+                break;
+            }
+            depth++;
+        }
+        if (isDecisiveScore(search.rootScore)) {
+            Log.i(TAG, "Completed search to depth " + depth + ", game ends within "
+                    + getPliesToEnd(search.rootScore) + " plies");
+        } else {
+            Log.i(TAG, "Completed search to depth " + depth);
+        }
+        return bestMoves;
+    }
+
+    /**
+     * Reorder moves so that the first moves come first, in their order, followed by the others in
+     * their order
+     */
+    private static void moveToFront(int[] moves, int[] firstMoves) {
+        int[] reordered = new int[moves.length];
+        System.arraycopy(firstMoves, 0, reordered, 0, firstMoves.length);
+        int count = firstMoves.length;
+        for (int idx = 0; idx < moves.length; idx++) {
+            if (indexOf(firstMoves, firstMoves.length, moves[idx]) < 0) {
+                reordered[count++] = moves[idx];
+            }
+        }
+        System.arraycopy(reordered, 0, moves, 0, moves.length);
+    }
+
+    /**
+     * Score every root move
+     *
+     * @return the moves with the best score
+     */
+    private static int[] searchRoot(GameAiInterface game, int[] availableMoves, Search search) {
+        // Moves leading to symmetric positions share a position hash and are only searched once
+        int moveCount = availableMoves.length;
+        long[] childHashes = new long[moveCount];
+        int[] symmetricIdx = new int[moveCount];
+        int searchedMoves = 0;
+        for (int idx = 0; idx < moveCount; idx++) {
+            game.makeSearchMove(availableMoves[idx]);
+            childHashes[idx] = game.getPositionHash();
+            game.unmakeSearchMove();
+            symmetricIdx[idx] = indexOf(childHashes, idx, childHashes[idx]);
+            if (symmetricIdx[idx] < 0) {
+                searchedMoves++;
+            }
+        }
+
+        int[] scores = new int[moveCount];
+        if (search.pool != null) {
+            search.pool.invoke(new RootTask(search, game, availableMoves, symmetricIdx, scores));
+        } else {
+            scoreRootMoves(search, game, availableMoves, symmetricIdx, scores);
+        }
+
+        int bestScore = -INFINITY;
+        int bestCount = 0;
+        for (int idx = 0; idx < moveCount; idx++) {
+            if (scores[idx] > bestScore) {
+                bestScore = scores[idx];
+                bestCount = 1;
+            } else if (scores[idx] == bestScore) {
+                bestCount++;
+            }
+        }
+        int[] bestMoves = new int[bestCount];
+        bestCount = 0;
+        for (int idx = 0; idx < moveCount; idx++) {
+            if (scores[idx] == bestScore) {
+                bestMoves[bestCount++] = availableMoves[idx];
+            }
+        }
+        search.rootScore = bestScore;
+        mTableHitRate = search.getTableHitRate();
+        Log.i(TAG, "Searched " + searchedMoves + " distinct of " + moveCount + " moves, "
+                + search.nodes + " nodes, best score " + bestScore
+                + ", transposition table hit rate " + mTableHitRate);
+        return bestMoves;
+    }
+
+    /**
+     * Score the distinct root moves, in parallel when running in the search pool
+     * <br><br>
+     * Every move is searched with a window just below the best score so far, so that equally good
+     * moves still get an exact score and can be chosen between at random. Moves which score lower
+     * only get an upper bound, which is never mistaken for a best move.
+     */
+    private static void scoreRootMoves(Search search, GameAiInterface game, int[] availableMoves,
+                                       int[] symmetricIdx, int[] scores) {
+        int bestScore = -INFINITY;
+        ArrayList<MoveTask> tasks = null;
+        for (int idx = 0; idx < availableMoves.length; idx++) {
+            if (symmetricIdx[idx] >= 0) {
+                continue;
+            }
+            int alpha = bestScore == -INFINITY ? -INFINITY : bestScore - 1;
+            if (tasks == null) {
+                scores[idx] = search.scoreMove(game, availableMoves[idx], 0, alpha, INFINITY);
+                bestScore = Math.max(bestScore, scores[idx]);
+                if (search.isParallel()) {
+                    tasks = new ArrayList<>();
+                }
+            } else {
+                tasks.add(new MoveTask(search.fork(), game.createSearchCopy(), availableMoves[idx],
+                        0, alpha, INFINITY, idx));
+            }
+        }
+        if (tasks != null) {
+            ForkJoinTask.invokeAll(tasks);
+            for (int idx = 0; idx < tasks.size(); idx++) {
+                MoveTask task = tasks.get(idx);
+                scores[task.moveIdx] = task.join();
+                search.add(task.search);
+            }
+        }
+        for (int idx = 0; idx < availableMoves.length; idx++) {
+            if (symmetricIdx[idx] >= 0) {
+                scores[idx] = scores[symmetricIdx[idx]];
+            }
+        }
+    }
+
+    /**
+     * The index of a hash among the first count hashes
+     *
+     * @return the index, or -1 if not found
+     */
+    private static int indexOf(long[] hashes, int count, long hash) {
+        for (int idx = 0; idx < count; idx++) {
+            if (hashes[idx] == hash) {
+                return idx;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * The index of a move among the first count moves
+     *
+     * @return the index, or -1 if not found
+     */
+    private static int indexOf(int[] moves, int count, int move) {
+        for (int idx = 0; idx < count; idx++) {
+            if (moves[idx] == move) {
+                return idx;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * The game-theoretic value of the position for the next player, searched to the maximum depth
+     *
+     * @param game
+     * @return WIN_SCORE less the plies to a win, DRAW_SCORE, -WIN_SCORE plus the plies to a loss,
+     * or a heuristic score in between
+     */
+    static int getScore(GameAiInterface game) {
+        if (mTable != null) {
+            mTable.newSearch();
+        }
+        Search search = new Search(mMaxDepth, mMoveOrdering, mTable, 0, null, null);
+        int score = search.negamax(game.createSearchCopy(), 0, -INFINITY, INFINITY);
+        mTableHitRate = search.getTableHitRate();
+        return score;
+    }
+
+    /**
+     * Sort the first count moves by descending static priority. Insertion sort keeps equal moves
+     * in their original order.
+     *
+     * @param priorities scratch space, at least count long
+     */
+    private static void orderMoves(GameAiInterface game, int[] moves, int count, int[] priorities) {
+        for (int idx = 0; idx < count; idx++) {
+            int move = moves[idx];
+            int priority = game.getMovePriority(move);
+            int insertIdx = idx;
+            while (insertIdx > 0 && priorities[insertIdx - 1] < priority) {
+                priorities[insertIdx] = priorities[insertIdx - 1];
+                moves[insertIdx] = moves[insertIdx - 1];
+                insertIdx--;
+            }
+            priorities[insertIdx] = priority;
+            moves[insertIdx] = move;
+        }
+    }
+
+    /**
+     * Whether a score is a proven win or loss, rather than a draw or a heuristic score
+     */
+    static boolean isDecisiveScore(int score) {
+        return Math.abs(score) > HEURISTIC_LIMIT;
+    }
+
+    /**
+     * The plies to the end of the game of a decisive score, counting the winning move
+     */
+    static int getPliesToEnd(int score) {
+        return WIN_SCORE - Math.abs(score) + 1;
+    }
+
+    private static int getHeuristicScore(double value) {
+        if (value > HEURISTIC_LIMIT) {
+            return HEURISTIC_LIMIT;
+        } else if (value < -HEURISTIC_LIMIT) {
+            return -HEURISTIC_LIMIT;
+        }
+        return (int) Math.round(value);
+    }
+
+    /**
+     * The state of a single search: negamax with alpha-beta cutoffs.
+     * <br><br>
+     * Scores are always from the point of view of the player making the move being scored.
+     * Decisive scores count the plies from the root of the search, but are stored in the
+     * transposition table counting from the stored position, so that an entry holds wherever
+     * the position is reached.
+     * <br><br>
+     * Moves are generated into buffers kept per depth, so searching a node allocates nothing.
+     */
+    private static class Search {
+        private static final int DEADLINE_CHECK_INTERVAL = 1024;
+
+        private final int maxDepth;
+        private final boolean moveOrdering;
+        private final TranspositionTable table;
+        private final long deadlineNanos;
+        private final SearchHandle handle;
+        private final ForkJoinPool pool;
+        private long nodes;
+        private long tableProbes;
+        private long tableHits;
+        private int rootScore;
+        private int[][] moveBuffers;        // per depth, each allocated on first use
+        private int[][] priorityBuffers;
+
+        /**
+         * @param deadlineNanos System.nanoTime() at which to abort the search, or 0 for no deadline
+         * @param handle        aborts the search when cancelled, or null
+         * @param pool          the pool to split the search across, or null to search on one thread
+         */
+        Search(int maxDepth, boolean moveOrdering, TranspositionTable table, long deadlineNanos,
+               SearchHandle handle, ForkJoinPool pool) {
+            this.maxDepth = maxDepth;
+            this.moveOrdering = moveOrdering;
+            this.table = table;
+            this.deadlineNanos = deadlineNanos;
+            this.handle = handle;
+            this.pool = pool;
+        }
+
+        /**
+         * A search with the same settings and its own statistics, for a subtree searched on another thread
+         */
+        Search fork() {
+            return new Search(maxDepth, moveOrdering, table, deadlineNanos, handle, pool);
+        }
+
+        /**
+         * Add the statistics of a forked search
+         */
+        void add(Search other) {
+            nodes += other.nodes;
+            tableProbes += other.tableProbes;
+            tableHits += other.tableHits;
+        }
+
+        boolean isParallel() {
+            return pool != null && ForkJoinTask.inForkJoinPool();
+        }
+
+        private boolean isAborted() {
+            return (handle != null && handle.isCancelled())
+                    || (deadlineNanos != 0 && System.nanoTime() > deadlineNanos);
+        }
+
+        double getTableHitRate() {
+            return tableProbes == 0 ? 0 : (double) tableHits / tableProbes;
+        }
+
+        /**
+         * The score of a move for the player making it
+         * <br><br>
+         * The move is made and unmade on the game, which is left as it was. A search aborted by
+         * its deadline or by cancellation leaves the game in an undefined state.
+         */
+        int scoreMove(GameAiInterface game, int move, int depth, int alpha, int beta) {
+            nodes++;
+            if (nodes % DEADLINE_CHECK_INTERVAL == 0 && isAborted()) {
+                throw SearchAbortedException.INSTANCE;
+            }
+            if (game.isWinningMove(move)) {
+                return WIN_SCORE - depth;
+            } else if (game.isDrawMove(move)) {
+                return DRAW_SCORE;
+            }
+            int player = game.getNextPlayer();
+            game.makeSearchMove(move);
+            int score;
+            if (depth == maxDepth) {
+                score = getHeuristicScore(game.getGameValue(player));
+            } else {
+                score = -negamax(game, depth + 1, -beta, -alpha);
+            }
+            game.unmakeSearchMove();
+            return score;
+        }
+
+        /**
+         * The score of the best move for the next player of the game
+         */
+        int negamax(GameAiInterface game, int depth, int alpha, int beta) {
+            // no line from here wins faster than the next move, or loses faster than the one after
+            alpha = Math.max(alpha, -(WIN_SCORE - depth - 1));
+            beta = Math.min(beta, WIN_SCORE - depth);
+            if (alpha >= beta) {
+                return alpha;
+            }
+
+            long hash = 0;
+            int draft = getDraft(depth);
+            int originalAlpha = alpha;
+            if (table != null) {
+                hash = game.getPositionHash();
+                long entry = table.probe(hash, draft);
+                tableProbes++;
+                if (entry != 0) {
+                    tableHits++;
+                    int score = fromTableScore(TranspositionTable.getScore(entry), depth);
+                    switch (TranspositionTable.getBound(entry)) {
+                        case TranspositionTable.BOUND_EXACT:
+                            return score;
+                        case TranspositionTable.BOUND_LOWER:
+                            alpha = Math.max(alpha, score);
+                            break;
+                        case TranspositionTable.BOUND_UPPER:
+                            beta = Math.min(beta, score);
+                            break;
+                    }
+                    if (alpha >= beta) {
+                        return score;
+                    }
+                }
+            }
+
+            int[] moves = getMoveBuffer(game, depth);
+            int moveCount = game.getAvailableMoves(moves);
+            if (moveCount == 0) {
+                return DRAW_SCORE;
+            }
+            if (moveOrdering) {
+                orderMoves(game, moves, moveCount, getPriorityBuffer(game, depth));
+            }
+            boolean split = depth <= PARALLEL_SPLIT_DEPTH && isParallel();
+            ArrayList<MoveTask> tasks = null;
+            int bestScore = -INFINITY;
+            for (int idx = 0; idx < moveCount; idx++) {
+                if (tasks != null) {
+                    tasks.add(new MoveTask(fork(), game.createSearchCopy(), moves[idx], depth, alpha, beta, idx));
+                    continue;
+                }
+                int score = scoreMove(game, moves[idx], depth, alpha, beta);
+                if (score > bestScore) {
+                    bestScore = score;
+                    if (score > alpha) {
+                        alpha = score;
+                        if (alpha >= beta) {
+                            break;  // the opponent will never allow this position
+                        }
+                    }
+                }
+                if (split) {
+                    // the first move set the bounds, search its siblings in parallel
+                    tasks = new ArrayList<>();
+                }
+            }
+            if (tasks != null && !tasks.isEmpty()) {
+                ForkJoinTask.invokeAll(tasks);
+                for (int idx = 0; idx < tasks.size(); idx++) {
+                    MoveTask task = tasks.get(idx);
+                    int score = task.join();
+                    add(task.search);
+                    if (score > bestScore) {
+                        bestScore = score;
+                        alpha = Math.max(alpha, score);
+                    }
+                }
+            }
+
+            if (table != null) {
+                int bound;
+                if (bestScore <= originalAlpha) {
+                    bound = TranspositionTable.BOUND_UPPER;
+                } else if (bestScore >= beta) {
+                    bound = TranspositionTable.BOUND_LOWER;
+                } else {
+                    bound = TranspositionTable.BOUND_EXACT;
+                }
+                table.store(hash, toTableScore(bestScore, depth), bound, draft);
+            }
+            return bestScore;
+        }
+
+        /**
+         * A score counting plies from the root as one counting them from the node at the depth
+         */
+        private static int toTableScore(int score, int depth) {
+            if (score > HEURISTIC_LIMIT) {
+                return score + depth;
+            } else if (score < -HEURISTIC_LIMIT) {
+                return score - depth;
+            }
+            return score;
+        }
+
+        private static int fromTableScore(int score, int depth) {
+            if (score > HEURISTIC_LIMIT) {
+                return score - depth;
+            } else if (score < -HEURISTIC_LIMIT) {
+                return score + depth;
+            }
+            return score;
+        }
+
+        /**
+         * The remaining search depth below a node
+         */
+        private int getDraft(int depth) {
+            if (maxDepth < 0) {
+                return TranspositionTable.UNLIMITED_DRAFT;
+            }
+            return Math.min(maxDepth - depth, TranspositionTable.UNLIMITED_DRAFT - 1);
+        }
+
+        private int[] getMoveBuffer(GameAiInterface game, int depth) {
+            if (moveBuffers == null) {
+                // a game never lasts more plies than it has moves at the start of the search
+                moveBuffers = new int[game.getMaxMoveCount() + 1][];
+            }
+            if (moveBuffers[depth] == null) {
+                moveBuffers[depth] = new int[game.getMaxMoveCount()];
+            }
+            return moveBuffers[depth];
+        }
+
+        private int[] getPriorityBuffer(GameAiInterface game, int depth) {
+            if (priorityBuffers == null) {
+                priorityBuffers = new int[game.getMaxMoveCount() + 1][];
+            }
+            if (priorityBuffers[depth] == null) {
+                priorityBuffers[depth] = new int[game.getMaxMoveCount()];
+            }
+            return priorityBuffers[depth];
+        }
+    }
+
+    /**
+     * Scores one move with a forked search, on a thread of the search pool.
+     * Each task searches its own copy of the game.
+     */
+    private static class MoveTask extends RecursiveTask<Integer> {
+        private static final long serialVersionUID = 1L;
+
+        private final Search search;
+        private final GameAiInterface game;
+        private final int move;
+        private final int depth;
+        private final int alpha;
+        private final int beta;
+        private final int moveIdx;
+
+        MoveTask(Search search, GameAiInterface game, int move, int depth, int alpha, int beta, int moveIdx) {
+            this.search = search;
+            this.game = game;
+            this.move = move;
+            this.depth = depth;
+            this.alpha = alpha;
+            this.beta = beta;
+            this.moveIdx = moveIdx;
+        }
+
+        @Override
+        protected Integer compute() {
+            return search.scoreMove(game, move, depth, alpha, beta);
+        }
+    }
+
+    /**
+     * Scores the root moves inside the search pool, so that the search can fork
+     */
+    private static class RootTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final Search search;
+        private final GameAiInterface game;
+        private final int[] availableMoves;
+        private final int[] symmetricIdx;
+        private final int[] scores;
+
+        RootTask(Search search, GameAiInterface game, int[] availableMoves, int[] symmetricIdx, int[] scores) {
+            this.search = search;
+            this.game = game;
+            this.availableMoves = availableMoves;
+            this.symmetricIdx = symmetricIdx;
+            this.scores = scores;
+        }
+
+        @Override
+        protected void compute() {
+            scoreRootMoves(search, game, availableMoves, symmetricIdx, scores);
+        }
+    }
+
+    /**
+     * Thrown to unwind a search which ran out of time. Preallocated, without a stack trace.
+     */
+    private static class SearchAbortedException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        static final SearchAbortedException INSTANCE = new SearchAbortedException();
+
+        @Override
+        public synchronized Throwable fillInStackTrace() {
+            return this;
+        }
+    }
+
+    /**
+     * A game which can be played by GameAi must implement the GameAiInterface
+     * <br><br>
+     * The search works on moves encoded as ints, e.g. the index of a square, which are always
+     * moves of the next player. MoveInterface objects are only created at the edges of the search,
+     * see encodeMove() and decodeMove().
+     */
+    public interface GameAiInterface {
+        /**
+         * the next player to move in the game
+         *
+         * @return integer
+         */
+        int getNextPlayer();
+
+        /**
+         * Whether or not a specific move results in a win
+         *
+         * @param move
+         * @return true for win
+         */
+        boolean isWinningMove(MoveInterface move);
+
+        /**
+         * Whether or not a specific move results in a draw
+         *
+         * @param move
+         * @return true for draw
+         */
+        boolean isDrawMove(MoveInterface move);
+
+        /**
+         * Whether an available encoded move of the next player results in a win
+         *
+         * @param move
+         * @return true for win
+         */
+        boolean isWinningMove(int move);
+
+        /**
+         * Whether an available encoded move of the next player results in a draw
+         *
+         * @param move
+         * @return true for draw
+         */
+        boolean isDrawMove(int move);
+
+        /**
+         * Create a copy of a game in which a certain move is made.
+         * The games created by this function are used to evaluate
+         * the outcomes of different possible moves.
+         *
+         * @param move
+         * @return
+         */
+        GameAiInterface createGameAfterMove(MoveInterface move);
+
+        /**
+         * Create a detached copy of a game, which the AI modifies in place with
+         * makeSearchMove() and unmakeSearchMove() while searching
+         *
+         * @return
+         */
+        GameAiInterface createSearchCopy();
+
+        /**
+         * Make a move on a search copy, without checking the rules or notifying anyone.
+         * The move is pushed onto an undo stack.
+         *
+         * @param move an available encoded move for the next player
+         */
+        void makeSearchMove(int move);
+
+        /**
+         * Take back the last move made by makeSearchMove()
+         */
+        void unmakeSearchMove();
+
+        /**
+         * An array of available moves in the current game
+         *
+         * @return
+         */
+        ArrayList<MoveInterface> getAvailableMoves();
+
+        /**
+         * The most moves getAvailableMoves(int[]) can write, e.g. the number of squares
+         *
+         * @return
+         */
+        int getMaxMoveCount();
+
+        /**
+         * Write the available encoded moves of the next player, without allocating
+         *
+         * @param moves at least getMaxMoveCount() long
+         * @return the number of moves written
+         */
+        int getAvailableMoves(int[] moves);
+
+        /**
+         * The encoded form of a move
+         *
+         * @param move
+         * @return
+         */
+        int encodeMove(MoveInterface move);
+
+        /**
+         * The encoded move as a move of the next player
+         *
+         * @param move
+         * @return
+         */
+        MoveInterface decodeMove(int move);
+
+        /**
+         * A heuristic evaulation of the board state for a given player
+         * <br><br>
+         * Higher positive numbers represent a better predicted outcome for the player in question.
+         * It is called at every leaf of a depth-limited search, so it should be cheap.
+         *
+         * @return
+         */
+        double getGameValue(int player);
+
+        /**
+         * A static estimate of how promising a move is, used to search stronger moves first
+         * <br><br>
+         * Higher numbers are searched earlier
+         *
+         * @param move an encoded move
+         * @return
+         */
+        int getMovePriority(int move);
+
+        /**
+         * A hash of the position and the next player to move, used to cache search results
+         * <br><br>
+         * Equal positions must have equal hashes, and different positions should almost never collide.
+         * Positions which are equivalent under a symmetry of the game should share a hash, so that
+         * search results are reused between them.
+         *
+         * @return
+         */
+        long getPositionHash();
+
+        /**
+         * An id which is the same for every copy of the game, see GameAi.newGameId()
+         *
+         * @return
+         */
+        long getGameId();
+
+        /**
+         * A number which changes whenever the game changes other than by a search, e.g. when a
+         * move is made or the game is reset. Searches started in another generation are stale.
+         *
+         * @return
+         */
+        int getGeneration();
+
+        /**
+         * Whether moves are found by minimax or Monte Carlo tree search
+         *
+         * @return
+         */
+        Strategy getAiStrategy();
+
+        /**
+         * A perfect move for the next player, looked up from a precomputed table.
+         * Equally good moves should be chosen between at random.
+         *
+         * @param random
+         * @return the move, or null when no table covers the position and it must be searched
+         */
+        MoveInterface getSolvedMove(Random random);
+
+        /**
+         * Called with the move found by makeAiMove(), on the callback executor.
+         * Events from another generation of the game should be ignored.
+         *
+         * @param aiFinishEvent
+         */
+        void onAiFinishEvent(AiFinishEvent aiFinishEvent);
+    }
+
+    /**
+     * A game which can be played by the GameAi needs to have
+     * Move objects which implements the MoveInterface
+     */
+    public interface MoveInterface {
+        /**
+         * The player who performs this move
+         *
+         * @return
+         */
+        int getPlayer();
+    }
+}
@@ -0,0 +1,329 @@
+package com.iantmeyer.tic_tac_toe.game;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Random;
+import java.util.concurrent.Executor;
+
+/**
+ * Searches for moves of many games at once, e.g. on a server, on a fixed number of worker threads
+ * <br><br>
+ * Each search runs on a single worker, so throughput grows with the number of workers rather than
+ * the speed of any one search. Every request carries its own SearchConfig. The workers share one
+ * transposition table.
+ * <br><br>
+ * Requests are queued per game and the games take turns, so a game asking for many moves can not
+ * starve the others. A request for a newer generation of a game cancels that game's queued requests
+ * for older generations, which could only be dropped later. The queue is bounded: requests beyond
+ * its capacity are rejected immediately, rather than waiting ever longer.
+ * <br><br>
+ * Moves are delivered as by GameAi.makeAiMove(), on the callback executor.
+ */
+public final class GameAiService {
+    private static final String TAG = "GameAiService";
+
+    private final int mQueueCapacity;
+    private final Executor mCallbackExecutor;
+    private final TranspositionTable mTable;
+    private final Thread[] mWorkers;
+
+    // guarded by mLock
+    private final Object mLock = new Object();
+    private final HashMap<Long, ArrayDeque<Request>> mGameQueues = new HashMap<>();
+    private final ArrayDeque<ArrayDeque<Request>> mReadyQueues = new ArrayDeque<>();  // games in turn order
+    private int mQueueDepth;
+    private int mActiveSearches;
+    private long mCompletedCount;
+    private long mRejectedCount;
+    private boolean mShutdown;
+
+    private final LatencyStats mQueueLatency = new LatencyStats();
+    private final LatencyStats mSearchLatency = new LatencyStats();
+
+    /**
+     * Start the worker threads
+     *
+     * @param workerCount      the number of searches run at once, e.g. the number of processors
+     * @param queueCapacity    the number of requests waiting for a worker beyond which new
+     *                         requests are rejected
+     * @param tableBytes       the memory cap of the shared transposition table, or 0 for none
+     * @param callbackExecutor delivers the moves, or null to deliver them on the worker thread
+     */
+    public GameAiService(int workerCount, int queueCapacity, long tableBytes, Executor callbackExecutor) {
+        if (workerCount < 1 || queueCapacity < 0) {
+            throw new IllegalArgumentException("Invalid GameAiService: " + workerCount + " workers, queue of " + queueCapacity);
+        }
+        mQueueCapacity = queueCapacity;
+        mCallbackExecutor = callbackExecutor;
+        mTable = tableBytes > 0 ? new TranspositionTable(tableBytes) : null;
+        mWorkers = new Thread[workerCount];
+        for (int idx = 0; idx < workerCount; idx++) {
+            mWorkers[idx] = new Thread(new Worker(new Random()), TAG + "-" + idx);
+            mWorkers[idx].setDaemon(true);
+            mWorkers[idx].start();
+        }
+    }
+
+    /**
+     * A service with a worker per processor, the default transposition table size, delivering moves
+     * on the worker threads
+     *
+     * @param queueCapacity
+     */
+    public GameAiService(int queueCapacity) {
+        this(Runtime.getRuntime().availableProcessors(), queueCapacity, GameAi.DEFAULT_TABLE_BYTES, null);
+    }
+
+    /**
+     * Queue a search for the next move of a game
+     * <br><br>
+     * The game must not change until the move is delivered or the search is cancelled, other than
+     * on the callback executor.
+     *
+     * @param game
+     * @param config
+     * @return a handle to cancel the search with, or null when the queue is full or the service is
+     * shut down
+     */
+    public SearchHandle submit(GameAi.GameAiInterface game, SearchConfig config) {
+        SearchHandle handle = new SearchHandle(game.getGameId(), game.getGeneration());
+        Request request = new Request(game, config, handle, System.nanoTime());
+        synchronized (mLock) {
+            if (mShutdown) {
+                return null;
+            }
+            ArrayDeque<Request> gameQueue = mGameQueues.get(handle.getGameId());
+            if (gameQueue != null) {
+                cancelStale(gameQueue, handle.getGeneration());
+            }
+            if (mQueueDepth >= mQueueCapacity) {
+                if (gameQueue != null && gameQueue.isEmpty()) {
+                    mGameQueues.remove(handle.getGameId());
+                    mReadyQueues.remove(gameQueue);
+                }
+                mRejectedCount++;
+                Log.i(TAG, "Rejected a search, " + mQueueDepth + " searches queued");
+                return null;
+            }
+            if (gameQueue == null) {
+                gameQueue = new ArrayDeque<>();
+                mGameQueues.put(handle.getGameId(), gameQueue);
+                mReadyQueues.addLast(gameQueue);
+            }
+            gameQueue.addLast(request);
+            mQueueDepth++;
+            mLock.notify();
+        }
+        Events.post(new GameAi.AiStartEvent(game.getNextPlayer()));
+        return handle;
+    }
+
+    /**
+     * Stop the workers after their current searches. Queued searches are cancelled.
+     */
+    public void shutdown() {
+        synchronized (mLock) {
+            mShutdown = true;
+            for (ArrayDeque<Request> gameQueue : mReadyQueues) {
+                for (Request request : gameQueue) {
+                    request.handle.cancel();
+                    request.handle.finish();
+                }
+            }
+            mReadyQueues.clear();
+            mGameQueues.clear();
+            mQueueDepth = 0;
+            mLock.notifyAll();
+        }
+    }
+
+    /**
+     * The number of searches waiting for a worker
+     *
+     * @return
+     */
+    public int getQueueDepth() {
+        synchronized (mLock) {
+            return mQueueDepth;
+        }
+    }
+
+    /**
+     * The number of searches running
+     *
+     * @return
+     */
+    public int getActiveSearches() {
+        synchronized (mLock) {
+            return mActiveSearches;
+        }
+    }
+
+    /**
+     * The number of searches finished, including cancelled ones
+     *
+     * @return
+     */
+    public long getCompletedCount() {
+        synchronized (mLock) {
+            return mCompletedCount;
+        }
+    }
+
+    /**
+     * The number of requests rejected because the queue was full
+     *
+     * @return
+     */
+    public long getRejectedCount() {
+        synchronized (mLock) {
+            return mRejectedCount;
+        }
+    }
+
+    /**
+     * The time searches waited for a worker
+     *
+     * @return
+     */
+    public LatencyStats getQueueLatency() {
+        return mQueueLatency;
+    }
+
+    /**
+     * The time searches took, once running
+     *
+     * @return
+     */
+    public LatencyStats getSearchLatency() {
+        return mSearchLatency;
+    }
+
+    /**
+     * Cancel the queued requests of a game for other generations than the given one, which is newer
+     */
+    private void cancelStale(ArrayDeque<Request> gameQueue, int generation) {
+        Iterator<Request> iterator = gameQueue.iterator();
+        while (iterator.hasNext()) {
+            Request request = iterator.next();
+            if (request.handle.getGeneration() != generation) {
+                request.handle.cancel();
+                request.handle.finish();
+                iterator.remove();
+                mQueueDepth--;
+                mCompletedCount++;
+            }
+        }
+    }
+
+    /**
+     * Wait for the next request, taking the games in turn
+     *
+     * @return the request, or null when the service is shut down
+     */
+    private Request take() throws InterruptedException {
+        synchronized (mLock) {
+            while (!mShutdown) {
+                ArrayDeque<Request> gameQueue = mReadyQueues.pollFirst();
+                if (gameQueue == null) {
+                    mLock.wait();
+                    continue;
+                }
+                Request request = gameQueue.pollFirst();
+                if (gameQueue.isEmpty()) {
+                    mGameQueues.remove(request.handle.getGameId());
+                } else {
+                    mReadyQueues.addLast(gameQueue);
+                }
+                mQueueDepth--;
+                mActiveSearches++;
+                return request;
+            }
+            return null;
+        }
+    }
+
+    private void onSearchFinished() {
+        synchronized (mLock) {
+            mActiveSearches--;
+            mCompletedCount++;
+        }
+    }
+
+    private static final class Request {
+        final GameAi.GameAiInterface game;
+        final SearchConfig config;
+        final SearchHandle handle;
+        final long submitNanos;
+
+        Request(GameAi.GameAiInterface game, SearchConfig config, SearchHandle handle, long submitNanos) {
+            this.game = game;
+            this.config = config;
+            this.handle = handle;
+            this.submitNanos = submitNanos;
+        }
+    }
+
+    private final class Worker implements Runnable {
+        private final Random random;
+
+        Worker(Random random) {
+            this.random = random;
+        }
+
+        @Override
+        public void run() {
+            try {
+                Request request;
+                while ((request = take()) != null) {
+                    try {
+                        search(request);
+                    } finally {
+                        onSearchFinished();
+                    }
+                }
+            } catch (InterruptedException e) {
+                Log.i(TAG, "Worker interrupted");
+            }
+        }
+
+        private void search(final Request request) {
+            long startNanos = System.nanoTime();
+            mQueueLatency.record(startNanos - request.submitNanos);
+            if (request.handle.isCancelled()) {
+                request.handle.finish();
+                return;
+            }
+            GameAi.MoveInterface bestMove;
+            try {
+                bestMove = GameAi.getBestMove(request.game, request.config, mTable, null, random, request.handle, null);
+            } catch (RuntimeException e) {
+                Log.e(TAG, "The Game Ai failed to find a move", e);
+                // the game waits for the AI since AiStartEvent, deliver the failure
+                bestMove = null;
+            } finally {
+                mSearchLatency.record(System.nanoTime() - startNanos);
+            }
+            final GameAi.MoveInterface move = bestMove;
+            if (move == null && request.handle.isCancelled()) {
+                request.handle.finish();
+                return;
+            }
+            Runnable delivery = new Runnable() {
+                @Override
+                public void run() {
+                    request.handle.finish();
+                    if (!request.handle.isCancelled()) {
+                        GameAi.deliverMove(request.game, request.handle, move);
+                    }
+                }
+            };
+            if (mCallbackExecutor != null) {
+                mCallbackExecutor.execute(delivery);
+            } else {
+                delivery.run();
+            }
+        }
+    }
+}
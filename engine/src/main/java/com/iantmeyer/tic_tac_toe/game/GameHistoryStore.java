@@ -0,0 +1,485 @@
+package com.iantmeyer.tic_tac_toe.game;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.zip.CRC32;
+
+/**
+ * Keeps every played game, as GameRecords in a block structured file
+ * <br><br>
+ * Games are collected in memory into blocks of about BLOCK_BYTES, and a full block is written by
+ * a background thread. Each block is followed by a footer indexing every block, so any game can
+ * be found by reading the footer and a single block. Reading all games, e.g. to export them,
+ * holds one block in memory at a time.
+ * <br><br>
+ * Writing a block overwrites the old footer. If that is interrupted, the next open finds no
+ * valid footer and rebuilds the index by scanning the blocks, whose CRC32 tells where the
+ * complete ones end. Games which could not be written, e.g. because the file could not be read,
+ * stay in memory and are retried with the next block, rather than written over the file.
+ * <br><br>
+ * file: int magic, byte version, blocks of: int game count, int length, the game records, int
+ * CRC32 of the records, then the footer: for each block long offset and int game count, then int
+ * block count, long footer offset, int magic
+ */
+public final class GameHistoryStore {
+    private static final String TAG = "GameHistoryStore";
+
+    static final int BLOCK_BYTES = 64 * 1024;
+
+    private static final int MAGIC = 0x54545448;           // "TTTH"
+    private static final int FOOTER_MAGIC = 0x54545446;    // "TTTF"
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 5;
+    private static final int BLOCK_HEADER_BYTES = 8;
+    private static final int INDEX_ENTRY_BYTES = 12;
+    private static final int FOOTER_TAIL_BYTES = 16;
+
+    /**
+     * Receives the games read from the store, one at a time
+     */
+    public interface Visitor {
+        void visit(GameRecord record) throws IOException;
+    }
+
+    private final File mFile;
+    private final Executor mExecutor;
+
+    // guarded by mLock, the block being filled
+    private final Object mLock = new Object();
+    private ByteArrayOutputStream mPendingBlock = new ByteArrayOutputStream();
+    private int mPendingCount;
+    private boolean mFlushScheduled;
+
+    private final Runnable mFlushTask = new Runnable() {
+        @Override
+        public void run() {
+            flush();
+        }
+    };
+
+    // guarded by mWriteLock, the blocks in the file, loaded on first use
+    private final Object mWriteLock = new Object();
+    private boolean mIndexLoaded;
+    private long[] mBlockOffsets = new long[16];
+    private int[] mBlockCounts = new int[16];
+    private int mBlockCount;
+    private long mGameCount;
+    private long mEndOffset;    // where the next block goes
+
+    /**
+     * A store writing on its own background thread
+     *
+     * @param file
+     */
+    public GameHistoryStore(File file) {
+        this(file, createExecutor());
+    }
+
+    /**
+     * @param file
+     * @param executor writes the full blocks, off the caller's thread
+     */
+    public GameHistoryStore(File file, Executor executor) {
+        mFile = file;
+        mExecutor = executor;
+    }
+
+    private static Executor createExecutor() {
+        return Executors.newSingleThreadExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, TAG);
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    /**
+     * Keep a game, writing its block in the background once full
+     *
+     * @param record
+     */
+    public void add(GameRecord record) {
+        synchronized (mLock) {
+            if (!append(record) || mFlushScheduled) {
+                return;
+            }
+            mFlushScheduled = true;
+        }
+        mExecutor.execute(mFlushTask);
+    }
+
+    /**
+     * Write the games of the block being filled in the background, e.g. when the app pauses
+     */
+    public void commit() {
+        synchronized (mLock) {
+            if (mPendingCount == 0 || mFlushScheduled) {
+                return;
+            }
+            mFlushScheduled = true;
+        }
+        mExecutor.execute(mFlushTask);
+    }
+
+    /**
+     * Add a game to the block being filled
+     *
+     * @return whether the block is full
+     */
+    // guarded by mLock
+    private boolean append(GameRecord record) {
+        record.writeTo(mPendingBlock);
+        mPendingCount++;
+        return mPendingBlock.size() >= BLOCK_BYTES;
+    }
+
+    /**
+     * Write the games of the block being filled on the calling thread
+     */
+    public void flush() {
+        // taking the block under the write lock keeps the blocks in the order of the games
+        synchronized (mWriteLock) {
+            byte[] block;
+            int count;
+            synchronized (mLock) {
+                block = mPendingBlock.toByteArray();
+                count = mPendingCount;
+                mPendingBlock = new ByteArrayOutputStream();
+                mPendingCount = 0;
+                mFlushScheduled = false;
+            }
+            if (count > 0 && !writeBlockQuietly(block, count)) {
+                // keep the games ahead of any added since, to retry with the next flush
+                synchronized (mLock) {
+                    byte[] newer = mPendingBlock.toByteArray();
+                    mPendingBlock = new ByteArrayOutputStream(block.length + newer.length);
+                    mPendingBlock.write(block, 0, block.length);
+                    mPendingBlock.write(newer, 0, newer.length);
+                    mPendingCount += count;
+                }
+            }
+        }
+    }
+
+    /**
+     * The number of games written to the file
+     *
+     * @return
+     * @throws IOException
+     */
+    public long getGameCount() throws IOException {
+        synchronized (mWriteLock) {
+            loadIndex();
+            return mGameCount;
+        }
+    }
+
+    /**
+     * Read one game written to the file
+     *
+     * @param idx 0 for the first game
+     * @return
+     * @throws IOException
+     */
+    public GameRecord get(long idx) throws IOException {
+        synchronized (mWriteLock) {
+            loadIndex();
+            if (idx < 0 || idx >= mGameCount) {
+                throw new IndexOutOfBoundsException("Game " + idx + " of " + mGameCount);
+            }
+            RandomAccessFile file = new RandomAccessFile(mFile, "r");
+            try {
+                for (int block = 0; ; block++) {
+                    if (idx < mBlockCounts[block]) {
+                        byte[] records = readBlock(file, mBlockOffsets[block]);
+                        int[] offset = new int[1];
+                        GameRecord record = GameRecord.readFrom(records, offset);
+                        for (; idx > 0; idx--) {
+                            record = GameRecord.readFrom(records, offset);
+                        }
+                        return record;
+                    }
+                    idx -= mBlockCounts[block];
+                }
+            } finally {
+                file.close();
+            }
+        }
+    }
+
+    /**
+     * Read every game, after writing the block being filled
+     *
+     * @param visitor
+     * @throws IOException
+     */
+    public void forEach(Visitor visitor) throws IOException {
+        synchronized (mWriteLock) {
+            flush();
+            loadIndex();
+            if (mBlockCount == 0) {
+                return;
+            }
+            RandomAccessFile file = new RandomAccessFile(mFile, "r");
+            try {
+                for (int block = 0; block < mBlockCount; block++) {
+                    byte[] records = readBlock(file, mBlockOffsets[block]);
+                    int[] offset = new int[1];
+                    for (int idx = 0; idx < mBlockCounts[block]; idx++) {
+                        visitor.visit(GameRecord.readFrom(records, offset));
+                    }
+                }
+            } finally {
+                file.close();
+            }
+        }
+    }
+
+    /**
+     * Write every game as a line of text, see GameRecord.toString()
+     *
+     * @param writer
+     * @return the number of games exported
+     * @throws IOException
+     */
+    public long exportGames(final Writer writer) throws IOException {
+        final long[] count = new long[1];
+        forEach(new Visitor() {
+            @Override
+            public void visit(GameRecord record) throws IOException {
+                writer.write(record.toString());
+                writer.write('\n');
+                count[0]++;
+            }
+        });
+        writer.flush();
+        return count[0];
+    }
+
+    /**
+     * Add the games of lines written by exportGames(), writing each block as soon as it is full
+     * on the calling thread
+     *
+     * @param reader
+     * @return the number of games imported
+     * @throws IOException when a line can not be read or parsed, after the games before it were
+     *                     added
+     */
+    public long importGames(Reader reader) throws IOException {
+        BufferedReader lines = new BufferedReader(reader);
+        long count = 0;
+        String line;
+        while ((line = lines.readLine()) != null) {
+            if (line.trim().isEmpty()) {
+                continue;
+            }
+            GameRecord record = GameRecord.parse(line);
+            boolean full;
+            synchronized (mLock) {
+                full = append(record);
+            }
+            if (full) {
+                flush();
+            }
+            count++;
+        }
+        flush();
+        return count;
+    }
+
+    /**
+     * The number of blocks written to the file
+     */
+    int getBlockCount() throws IOException {
+        synchronized (mWriteLock) {
+            loadIndex();
+            return mBlockCount;
+        }
+    }
+
+    /**
+     * @return whether the block was written
+     */
+    private boolean writeBlockQuietly(byte[] block, int count) {
+        synchronized (mWriteLock) {
+            try {
+                loadIndex();
+                writeBlock(block, count);
+                return true;
+            } catch (IOException e) {
+                Log.e(TAG, "Failed to write " + count + " games to " + mFile, e);
+                return false;
+            }
+        }
+    }
+
+    // guarded by mWriteLock
+    private void writeBlock(byte[] block, int count) throws IOException {
+        if (mBlockCount == mBlockOffsets.length) {
+            mBlockOffsets = Arrays.copyOf(mBlockOffsets, mBlockCount * 2);
+            mBlockCounts = Arrays.copyOf(mBlockCounts, mBlockCount * 2);
+        }
+        long offset = mEndOffset;
+        mBlockOffsets[mBlockCount] = offset;
+        mBlockCounts[mBlockCount] = count;
+        mBlockCount++;
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(
+                BLOCK_HEADER_BYTES + block.length + 4 + mBlockCount * INDEX_ENTRY_BYTES + FOOTER_TAIL_BYTES);
+        DataOutputStream out = new DataOutputStream(bytes);
+        if (offset == 0) {
+            out.writeInt(MAGIC);
+            out.writeByte(VERSION);
+            offset = HEADER_BYTES;
+            mBlockOffsets[mBlockCount - 1] = offset;
+        }
+        out.writeInt(count);
+        out.writeInt(block.length);
+        out.write(block);
+        CRC32 crc = new CRC32();
+        crc.update(block);
+        out.writeInt((int) crc.getValue());
+        long footerOffset = offset + BLOCK_HEADER_BYTES + block.length + 4;
+        for (int idx = 0; idx < mBlockCount; idx++) {
+            out.writeLong(mBlockOffsets[idx]);
+            out.writeInt(mBlockCounts[idx]);
+        }
+        out.writeInt(mBlockCount);
+        out.writeLong(footerOffset);
+        out.writeInt(FOOTER_MAGIC);
+
+        RandomAccessFile file = new RandomAccessFile(mFile, "rw");
+        try {
+            file.seek(mEndOffset);
+            file.write(bytes.toByteArray());
+            file.setLength(file.getFilePointer());
+            file.getFD().sync();
+        } catch (IOException e) {
+            mBlockCount--;
+            throw e;
+        } finally {
+            file.close();
+        }
+        mEndOffset = footerOffset;
+        mGameCount += count;
+    }
+
+    // guarded by mWriteLock
+    private void loadIndex() throws IOException {
+        if (mIndexLoaded) {
+            return;
+        }
+        if (mFile.exists() && mFile.length() > 0) {
+            RandomAccessFile file = new RandomAccessFile(mFile, "r");
+            try {
+                if (file.length() < HEADER_BYTES || file.readInt() != MAGIC || file.readUnsignedByte() != VERSION) {
+                    throw new IOException(mFile + " is not a game history");
+                }
+                if (!readFooter(file)) {
+                    Log.e(TAG, "No valid footer in " + mFile + ", scanning its blocks");
+                    scanBlocks(file);
+                }
+            } finally {
+                file.close();
+            }
+            Log.i(TAG, "Opened " + mGameCount + " games in " + mBlockCount + " blocks");
+        }
+        // a block written without the index would overwrite the file, so a failed load is retried
+        mIndexLoaded = true;
+    }
+
+    /**
+     * @return whether the footer is valid
+     */
+    private boolean readFooter(RandomAccessFile file) throws IOException {
+        long length = file.length();
+        if (length < HEADER_BYTES + FOOTER_TAIL_BYTES) {
+            return false;
+        }
+        file.seek(length - FOOTER_TAIL_BYTES);
+        int blockCount = file.readInt();
+        long footerOffset = file.readLong();
+        if (file.readInt() != FOOTER_MAGIC || blockCount < 0
+                || footerOffset + (long) blockCount * INDEX_ENTRY_BYTES + FOOTER_TAIL_BYTES != length) {
+            return false;
+        }
+        file.seek(footerOffset);
+        byte[] index = new byte[blockCount * INDEX_ENTRY_BYTES];
+        file.readFully(index);
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(index));
+        mBlockOffsets = new long[Math.max(16, blockCount)];
+        mBlockCounts = new int[mBlockOffsets.length];
+        mGameCount = 0;
+        for (int idx = 0; idx < blockCount; idx++) {
+            mBlockOffsets[idx] = in.readLong();
+            mBlockCounts[idx] = in.readInt();
+            mGameCount += mBlockCounts[idx];
+        }
+        mBlockCount = blockCount;
+        mEndOffset = footerOffset;
+        return true;
+    }
+
+    private void scanBlocks(RandomAccessFile file) throws IOException {
+        mBlockCount = 0;
+        mGameCount = 0;
+        long offset = HEADER_BYTES;
+        long length = file.length();
+        while (offset + BLOCK_HEADER_BYTES + 4 <= length) {
+            byte[] records;
+            int count;
+            try {
+                file.seek(offset);
+                count = file.readInt();
+                records = readBlock(file, offset);
+            } catch (IOException e) {
+                break;
+            }
+            if (mBlockCount == mBlockOffsets.length) {
+                mBlockOffsets = Arrays.copyOf(mBlockOffsets, mBlockCount * 2);
+                mBlockCounts = Arrays.copyOf(mBlockCounts, mBlockCount * 2);
+            }
+            mBlockOffsets[mBlockCount] = offset;
+            mBlockCounts[mBlockCount] = count;
+            mBlockCount++;
+            mGameCount += count;
+            offset += BLOCK_HEADER_BYTES + records.length + 4;
+        }
+        // the next block overwrites whatever follows the last complete one
+        mEndOffset = mBlockCount > 0 ? offset : 0;
+    }
+
+    /**
+     * Read and check the records of the block at an offset
+     */
+    private static byte[] readBlock(RandomAccessFile file, long offset) throws IOException {
+        file.seek(offset);
+        int count = file.readInt();
+        int length = file.readInt();
+        if (count < 0 || length < 0 || offset + BLOCK_HEADER_BYTES + length + 4 > file.length()) {
+            throw new IOException("Invalid block at " + offset);
+        }
+        byte[] records = new byte[length];
+        file.readFully(records);
+        CRC32 crc = new CRC32();
+        crc.update(records);
+        if (file.readInt() != (int) crc.getValue()) {
+            throw new IOException("Corrupt block at " + offset);
+        }
+        return records;
+    }
+}
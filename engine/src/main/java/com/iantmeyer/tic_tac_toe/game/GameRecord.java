@@ -0,0 +1,205 @@
+package com.iantmeyer.tic_tac_toe.game;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+/**
+ * A played game of Tic-Tac-Toe: the board size, the first player, the moves and the result
+ * <br><br>
+ * record: varint board size, byte result << 2 | first player, varint move count, then the moves'
+ * cells packed at a fixed number of bits each, least significant bits first. A cell takes 4 bits
+ * on boards of up to 16 squares, otherwise just enough bits for the board, e.g. 9 on a 19x19
+ * board. A whole 3x3 game takes 8 bytes.
+ */
+public final class GameRecord {
+
+    static final int MAX_SIZE = 0x7FFF;
+
+    private final int mSize;
+    private final int mFirstPlayer;
+    private final TicTacToeGame.State mResult;
+    private final int[] mMoves;
+
+    /**
+     * @param size        the board size
+     * @param firstPlayer 1 or 2
+     * @param result      the state at the end, IN_PROGRESS for an abandoned game
+     * @param moves       the BitBoard cells of the moves, in order
+     */
+    public GameRecord(int size, int firstPlayer, TicTacToeGame.State result, int[] moves) {
+        mSize = size;
+        mFirstPlayer = firstPlayer;
+        mResult = result;
+        mMoves = moves;
+    }
+
+    public int getSize() {
+        return mSize;
+    }
+
+    public int getFirstPlayer() {
+        return mFirstPlayer;
+    }
+
+    public TicTacToeGame.State getResult() {
+        return mResult;
+    }
+
+    public int getMoveCount() {
+        return mMoves.length;
+    }
+
+    /**
+     * The cell of a move, row * size + column
+     *
+     * @param idx
+     * @return
+     */
+    public int getMove(int idx) {
+        return mMoves[idx];
+    }
+
+    /**
+     * The number of bits a move takes on a board
+     */
+    static int getMoveBits(int size) {
+        int cells = size * size;
+        return cells <= 16 ? 4 : 32 - Integer.numberOfLeadingZeros(cells - 1);
+    }
+
+    void writeTo(ByteArrayOutputStream out) {
+        writeVarint(out, mSize);
+        out.write(mResult.ordinal() << 2 | mFirstPlayer);
+        writeVarint(out, mMoves.length);
+        int bits = getMoveBits(mSize);
+        long buffer = 0;
+        int bufferBits = 0;
+        for (int move : mMoves) {
+            buffer |= (long) move << bufferBits;
+            bufferBits += bits;
+            while (bufferBits >= 8) {
+                out.write((int) buffer & 0xFF);
+                buffer >>>= 8;
+                bufferBits -= 8;
+            }
+        }
+        if (bufferBits > 0) {
+            out.write((int) buffer & 0xFF);
+        }
+    }
+
+    /**
+     * Decode a record written by writeTo()
+     *
+     * @param bytes
+     * @param offset the start of the record, advanced past it in offset[0]
+     * @return
+     * @throws IOException when the record is invalid
+     */
+    static GameRecord readFrom(byte[] bytes, int[] offset) throws IOException {
+        int size = readVarint(bytes, offset);
+        if (size == 0 || size > MAX_SIZE) {
+            throw new IOException("Invalid board size " + size);
+        }
+        int header = readByte(bytes, offset);
+        TicTacToeGame.State[] states = TicTacToeGame.State.values();
+        int firstPlayer = header & 3;
+        if (firstPlayer != 1 && firstPlayer != 2 || header >> 2 >= states.length) {
+            throw new IOException("Invalid game record header " + header);
+        }
+        int moveCount = readVarint(bytes, offset);
+        if (moveCount > size * size) {
+            throw new IOException("Invalid move count " + moveCount);
+        }
+        int bits = getMoveBits(size);
+        int[] moves = new int[moveCount];
+        long buffer = 0;
+        int bufferBits = 0;
+        for (int idx = 0; idx < moveCount; idx++) {
+            while (bufferBits < bits) {
+                buffer |= (long) readByte(bytes, offset) << bufferBits;
+                bufferBits += 8;
+            }
+            moves[idx] = (int) (buffer & ((1 << bits) - 1));
+            buffer >>>= bits;
+            bufferBits -= bits;
+        }
+        return new GameRecord(size, firstPlayer, states[header >> 2], moves);
+    }
+
+    private static int readByte(byte[] bytes, int[] offset) throws IOException {
+        if (offset[0] >= bytes.length) {
+            throw new IOException("Truncated game record");
+        }
+        return bytes[offset[0]++] & 0xFF;
+    }
+
+    static void writeVarint(ByteArrayOutputStream out, int value) {
+        while ((value & ~0x7F) != 0) {
+            out.write((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+
+    static int readVarint(byte[] bytes, int[] offset) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            int b = readByte(bytes, offset);
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Invalid varint");
+    }
+
+    /**
+     * The export line of the record: size, first player, result and the cells of the moves,
+     * separated by spaces
+     */
+    @Override
+    public String toString() {
+        StringBuilder line = new StringBuilder();
+        line.append(mSize).append(' ').append(mFirstPlayer).append(' ').append(mResult);
+        for (int move : mMoves) {
+            line.append(' ').append(move);
+        }
+        return line.toString();
+    }
+
+    /**
+     * Parse a line written by toString()
+     *
+     * @param line
+     * @return
+     * @throws IOException when the line is invalid
+     */
+    public static GameRecord parse(String line) throws IOException {
+        String[] fields = line.trim().split(" +");
+        if (fields.length < 3) {
+            throw new IOException("Invalid game record: " + line);
+        }
+        try {
+            int size = Integer.parseInt(fields[0]);
+            if (size <= 0 || size > MAX_SIZE) {
+                throw new IOException("Invalid board size in game record: " + line);
+            }
+            int firstPlayer = Integer.parseInt(fields[1]);
+            TicTacToeGame.State result = TicTacToeGame.State.valueOf(fields[2]);
+            int[] moves = new int[fields.length - 3];
+            for (int idx = 0; idx < moves.length; idx++) {
+                moves[idx] = Integer.parseInt(fields[idx + 3]);
+                if (moves[idx] < 0 || moves[idx] >= size * size) {
+                    throw new IOException("Invalid move in game record: " + line);
+                }
+            }
+            if ((firstPlayer != 1 && firstPlayer != 2) || moves.length > size * size) {
+                throw new IOException("Invalid game record: " + line);
+            }
+            return new GameRecord(size, firstPlayer, result, moves);
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Invalid game record: " + line, e);
+        }
+    }
+}
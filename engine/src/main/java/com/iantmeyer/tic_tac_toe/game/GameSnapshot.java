@@ -0,0 +1,180 @@
+package com.iantmeyer.tic_tac_toe.game;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.zip.CRC32;
+
+/**
+ * Everything needed to restore a game of Tic-Tac-Toe: the board, state, next player and player
+ * types, as one compact binary record
+ * <br><br>
+ * record: int magic, byte version, unsigned short board size, byte state, byte next player,
+ * byte human players (bit 0 for player 1, bit 1 for player 2), the squares at 2 bits each, four
+ * to a byte in row major order, then an int CRC32 of everything before it
+ * <br><br>
+ * Boards go up to BitBoard.MAX_SIZE, an 8x8 board takes 30 bytes.
+ */
+public final class GameSnapshot {
+
+    private static final int MAGIC = 0x54545453;   // "TTTS"
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 10;
+    private static final int CHECKSUM_BYTES = 4;
+
+    private final int mSize;
+    private final byte[] mSquares;     // the player at each square, row major
+    private final TicTacToeGame.State mState;
+    private final int mNextPlayer;
+    private final boolean mPlayer1Human;
+    private final boolean mPlayer2Human;
+
+    GameSnapshot(int size, byte[] squares, TicTacToeGame.State state, int nextPlayer,
+                 boolean player1Human, boolean player2Human) {
+        mSize = size;
+        mSquares = squares;
+        mState = state;
+        mNextPlayer = nextPlayer;
+        mPlayer1Human = player1Human;
+        mPlayer2Human = player2Human;
+    }
+
+    /**
+     * Take a snapshot of a game
+     *
+     * @param game
+     * @return
+     */
+    public static GameSnapshot of(TicTacToeGame game) {
+        BitBoard board = game.getBitBoard();
+        byte[] squares = new byte[board.getCellCount()];
+        for (int cell = 0; cell < squares.length; cell++) {
+            squares[cell] = (byte) board.getPlayerAt(cell);
+        }
+        return new GameSnapshot(board.getSize(), squares, game.getState(), game.getNextPlayer(),
+                game.isPlayerHuman(1), game.isPlayerHuman(2));
+    }
+
+    public int getSize() {
+        return mSize;
+    }
+
+    /**
+     * A copy of the board, as TicTacToeGame.getBoard()
+     *
+     * @return
+     */
+    public int[][] getBoard() {
+        int[][] board = new int[mSize][mSize];
+        for (int cell = 0; cell < mSquares.length; cell++) {
+            board[cell / mSize][cell % mSize] = mSquares[cell];
+        }
+        return board;
+    }
+
+    public TicTacToeGame.State getState() {
+        return mState;
+    }
+
+    public int getNextPlayer() {
+        return mNextPlayer;
+    }
+
+    public boolean isPlayerHuman(int player) {
+        return player == 1 ? mPlayer1Human : mPlayer2Human;
+    }
+
+    /**
+     * Encode the snapshot as a record
+     *
+     * @return
+     */
+    public byte[] toBytes() {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(getRecordBytes(mSize));
+        DataOutputStream out = new DataOutputStream(bytes);
+        try {
+            out.writeInt(MAGIC);
+            out.writeByte(VERSION);
+            out.writeShort(mSize);
+            out.writeByte(mState.ordinal());
+            out.writeByte(mNextPlayer);
+            out.writeByte((mPlayer1Human ? 1 : 0) | (mPlayer2Human ? 2 : 0));
+            out.write(packSquares(mSquares));
+            CRC32 crc = new CRC32();
+            crc.update(bytes.toByteArray());
+            out.writeInt((int) crc.getValue());
+        } catch (IOException e) {
+            throw new IllegalStateException("Writing to memory failed", e);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Decode a record written by toBytes()
+     *
+     * @param record
+     * @return
+     * @throws IOException when the record is truncated, corrupt, of an unknown version or of a
+     *                     board size no game supports
+     */
+    public static GameSnapshot fromBytes(byte[] record) throws IOException {
+        if (record.length < HEADER_BYTES + CHECKSUM_BYTES) {
+            throw new IOException("Truncated game snapshot: " + record.length + " bytes");
+        }
+        CRC32 crc = new CRC32();
+        crc.update(record, 0, record.length - CHECKSUM_BYTES);
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(record));
+        in.skipBytes(record.length - CHECKSUM_BYTES);
+        if (in.readInt() != (int) crc.getValue()) {
+            throw new IOException("Corrupt game snapshot");
+        }
+
+        in = new DataInputStream(new ByteArrayInputStream(record));
+        if (in.readInt() != MAGIC) {
+            throw new IOException("Not a game snapshot");
+        }
+        int version = in.readUnsignedByte();
+        if (version != VERSION) {
+            throw new IOException("Unknown game snapshot version " + version);
+        }
+        int size = in.readUnsignedShort();
+        int stateOrdinal = in.readUnsignedByte();
+        int nextPlayer = in.readUnsignedByte();
+        int humanPlayers = in.readUnsignedByte();
+        TicTacToeGame.State[] states = TicTacToeGame.State.values();
+        if (!BitBoard.isSupportedSize(size) || record.length != getRecordBytes(size) || stateOrdinal >= states.length
+                || nextPlayer < 1 || nextPlayer > 2) {
+            throw new IOException("Invalid game snapshot");
+        }
+        byte[] packed = new byte[(size * size + 3) / 4];
+        in.readFully(packed);
+        byte[] squares = unpackSquares(packed, size * size);
+        return new GameSnapshot(size, squares, states[stateOrdinal], nextPlayer,
+                (humanPlayers & 1) != 0, (humanPlayers & 2) != 0);
+    }
+
+    private static int getRecordBytes(int size) {
+        return HEADER_BYTES + (size * size + 3) / 4 + CHECKSUM_BYTES;
+    }
+
+    private static byte[] packSquares(byte[] squares) {
+        byte[] packed = new byte[(squares.length + 3) / 4];
+        for (int cell = 0; cell < squares.length; cell++) {
+            packed[cell >> 2] |= squares[cell] << ((cell & 3) * 2);
+        }
+        return packed;
+    }
+
+    private static byte[] unpackSquares(byte[] packed, int count) throws IOException {
+        byte[] squares = new byte[count];
+        for (int cell = 0; cell < count; cell++) {
+            squares[cell] = (byte) ((packed[cell >> 2] >> ((cell & 3) * 2)) & 3);
+            if (squares[cell] == 3) {
+                throw new IOException("Invalid game snapshot square " + cell);
+            }
+        }
+        return squares;
+    }
+}
@@ -0,0 +1,72 @@
+package com.iantmeyer.tic_tac_toe.game;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A histogram of durations, recorded without locks from any thread
+ * <br><br>
+ * Durations fall in power of two buckets of microseconds, so percentiles are accurate to within a
+ * factor of two. That is plenty to tell a healthy service from a saturated one.
+ */
+public final class LatencyStats {
+
+    private static final int BUCKET_COUNT = 40;
+
+    // bucket b counts durations of less than 2^b microseconds, and at least half that
+    private final AtomicLongArray mBuckets = new AtomicLongArray(BUCKET_COUNT);
+    private final AtomicLongArray mTotals = new AtomicLongArray(2);    // count, nanos
+
+    LatencyStats() {
+    }
+
+    void record(long nanos) {
+        long micros = Math.max(0, nanos / 1000);
+        int bucket = Math.min(BUCKET_COUNT - 1, 64 - Long.numberOfLeadingZeros(micros));
+        mBuckets.incrementAndGet(bucket);
+        mTotals.incrementAndGet(0);
+        mTotals.addAndGet(1, nanos);
+    }
+
+    /**
+     * The number of durations recorded
+     *
+     * @return
+     */
+    public long getCount() {
+        return mTotals.get(0);
+    }
+
+    /**
+     * The mean duration
+     *
+     * @return milliseconds, or 0 when nothing has been recorded
+     */
+    public double getMeanMillis() {
+        long count = mTotals.get(0);
+        return count == 0 ? 0 : mTotals.get(1) / (count * 1000000.0);
+    }
+
+    /**
+     * An upper bound of the duration which the given fraction of durations do not exceed
+     *
+     * @param fraction e.g. 0.99 for the 99th percentile
+     * @return milliseconds, or 0 when nothing has been recorded
+     */
+    public double getPercentileMillis(double fraction) {
+        long[] counts = new long[BUCKET_COUNT];
+        long count = 0;
+        for (int bucket = 0; bucket < BUCKET_COUNT; bucket++) {
+            counts[bucket] = mBuckets.get(bucket);
+            count += counts[bucket];
+        }
+        long rank = (long) Math.ceil(fraction * count);
+        long seen = 0;
+        for (int bucket = 0; bucket < BUCKET_COUNT; bucket++) {
+            seen += counts[bucket];
+            if (seen > 0 && seen >= rank) {
+                return (1L << bucket) / 1000.0;
+            }
+        }
+        return 0;
+    }
+}
@@ -0,0 +1,79 @@
+package com.iantmeyer.tic_tac_toe.game;
+
+import java.util.logging.Level;
+
+/**
+ * Logging for the game engine, with the same calls as android.util.Log
+ * <br><br>
+ * Messages go to a pluggable Log.Logger. By default they are written with java.util.logging, the
+ * Android app plugs in android.util.Log, and benchmarks discard them with Log.SILENT.
+ */
+public final class Log {
+
+    public static final int DEBUG = 3;
+    public static final int INFO = 4;
+    public static final int ERROR = 6;
+
+    /**
+     * A destination for log messages
+     */
+    public interface Logger {
+        /**
+         * Write one message
+         *
+         * @param priority DEBUG, INFO or ERROR
+         * @param tag
+         * @param msg
+         * @param tr       the cause of an error, or null
+         */
+        void log(int priority, String tag, String msg, Throwable tr);
+    }
+
+    /**
+     * A Logger which discards every message
+     */
+    public static final Logger SILENT = new Logger() {
+        @Override
+        public void log(int priority, String tag, String msg, Throwable tr) {
+        }
+    };
+
+    private static volatile Logger mLogger = new JavaLogger();
+
+    private Log() {
+        // discourage instantiation
+    }
+
+    /**
+     * Set where log messages are written
+     *
+     * @param logger
+     */
+    public static void setLogger(Logger logger) {
+        mLogger = logger != null ? logger : SILENT;
+    }
+
+    public static void d(String tag, String msg) {
+        mLogger.log(DEBUG, tag, msg, null);
+    }
+
+    public static void i(String tag, String msg) {
+        mLogger.log(INFO, tag, msg, null);
+    }
+
+    public static void e(String tag, String msg) {
+        mLogger.log(ERROR, tag, msg, null);
+    }
+
+    public static void e(String tag, String msg, Throwable tr) {
+        mLogger.log(ERROR, tag, msg, tr);
+    }
+
+    private static class JavaLogger implements Logger {
+        @Override
+        public void log(int priority, String tag, String msg, Throwable tr) {
+            Level level = priority >= ERROR ? Level.SEVERE : priority >= INFO ? Level.INFO : Level.FINE;
+            java.util.logging.Logger.getLogger(tag).log(level, msg, tr);
+        }
+    }
+}
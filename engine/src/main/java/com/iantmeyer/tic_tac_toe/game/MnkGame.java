@@ -0,0 +1,502 @@
+package com.iantmeyer.tic_tac_toe.game;
+
+import com.iantmeyer.tic_tac_toe.game.TicTacToeGame.Move;
+import com.iantmeyer.tic_tac_toe.game.TicTacToeGame.State;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Random;
+
+/**
+ * An m,n,k-game: two players take turns on a board of m rows and n columns, and the first to get
+ * k squares in a row, column or diagonal wins. Tic-tac-toe is the 3,3,3-game and Gomoku the
+ * 15,15,5-game.
+ * <br><br>
+ * The board is divided into windows, every run of k squares in a row. Each player's number of
+ * squares in every window is counted as squares are taken, along with the number of windows still
+ * open to at least one player. A move wins when it completes a window and draws when it blocks the
+ * last open windows, so both checks only look at the at most 4k windows through the square played,
+ * whatever the size of the board.
+ * <br><br>
+ * The same counts give the open-windows evaluation used by depth-limited searches, like
+ * BitBoard's open-lines evaluation.
+ * <br><br>
+ * Moves are TicTacToeGame.Move objects. Unlike TicTacToeGame, the game does not start GameAi
+ * moves itself, callers decide when to call GameAi.makeAiMove().
+ */
+public class MnkGame implements GameAi.GameAiInterface {
+
+    private static final String TAG = "MnkGame";
+
+    /**
+     * The longest supported run, so window counts fit into a byte
+     */
+    public static final int MAX_WIN_LENGTH = Byte.MAX_VALUE;
+
+    private static final HashMap<Long, Windows> WINDOWS = new HashMap<>();
+
+    private final Windows mWindows;
+    private final byte[] mCells;
+    private final byte[] mPlayer1Counts;
+    private final byte[] mPlayer2Counts;
+    private int mOpenWindows;
+    private int mEvaluation;    // for player 1
+    private int mEmptyCount;
+    private long mHash;
+    private int mNextPlayer = 1;
+    private State mState = State.SET_UP;
+    private GameAi.Strategy mAiStrategy = GameAi.Strategy.MINIMAX;
+    private final long mGameId;
+    private int mGeneration;
+
+    // squares taken by makeSearchMove(), most recent last
+    private int[] mSearchMoves;
+    private int mSearchMoveCount;
+
+    /**
+     * An empty board
+     *
+     * @param rows      m, the number of rows
+     * @param columns   n, the number of columns
+     * @param winLength k, the number of squares in a row which wins
+     */
+    public MnkGame(int rows, int columns, int winLength) {
+        if (rows < 1 || columns < 1 || winLength < 1 || winLength > MAX_WIN_LENGTH
+                || winLength > Math.max(rows, columns)) {
+            throw new IllegalArgumentException("Invalid m,n,k-game: " + rows + "," + columns + "," + winLength);
+        }
+        mWindows = getWindows(rows, columns, winLength);
+        mCells = new byte[rows * columns];
+        mPlayer1Counts = new byte[mWindows.windowCount];
+        mPlayer2Counts = new byte[mWindows.windowCount];
+        mOpenWindows = mWindows.windowCount;
+        mEmptyCount = mCells.length;
+        mHash = mWindows.emptyKey;
+        mGameId = GameAi.newGameId();
+    }
+
+    /**
+     * A copy of another game
+     */
+    private MnkGame(MnkGame game) {
+        mWindows = game.mWindows;
+        mCells = game.mCells.clone();
+        mPlayer1Counts = game.mPlayer1Counts.clone();
+        mPlayer2Counts = game.mPlayer2Counts.clone();
+        mOpenWindows = game.mOpenWindows;
+        mEvaluation = game.mEvaluation;
+        mEmptyCount = game.mEmptyCount;
+        mHash = game.mHash;
+        mNextPlayer = game.mNextPlayer;
+        mState = game.mState;
+        mGameId = game.mGameId;
+        mGeneration = game.mGeneration;
+    }
+
+    public int getRows() {
+        return mWindows.rows;
+    }
+
+    public int getColumns() {
+        return mWindows.columns;
+    }
+
+    public int getWinLength() {
+        return mWindows.winLength;
+    }
+
+    /**
+     * The State of the game
+     *
+     * @return
+     */
+    public State getState() {
+        return mState;
+    }
+
+    /**
+     * The player controlling a square
+     *
+     * @param row
+     * @param column
+     * @return 0 for an empty square or one outside the board, otherwise 1 or 2
+     */
+    public int getPlayerAtPosition(int row, int column) {
+        if (!isOnBoard(row, column)) {
+            return 0;
+        }
+        return mCells[row * mWindows.columns + column];
+    }
+
+    /**
+     * The number of empty squares
+     *
+     * @return
+     */
+    public int getEmptyCount() {
+        return mEmptyCount;
+    }
+
+    /**
+     * Perform a move in the game
+     *
+     * @param move
+     * @return false if the move is not allowed, the game is unchanged
+     */
+    public boolean makeMove(Move move) {
+        if (!isValidMove(move) || move.getPlayer() != mNextPlayer) {
+            return false;
+        }
+        Log.d(TAG, "Making move ( " + move.row + ", " + move.column + " ) for player " + move.getPlayer());
+        if (isWinningMove(move)) {
+            mState = move.getPlayer() == 1 ? State.PLAYER_1_WON : State.PLAYER_2_WON;
+        } else if (isDrawMove(move)) {
+            mState = State.DRAW;
+        } else {
+            mState = State.IN_PROGRESS;
+        }
+        set(getCell(move), move.getPlayer());
+        mNextPlayer = getPlayerAfter(move.getPlayer());
+        mGeneration++;
+        return true;
+    }
+
+    @Override
+    public int getNextPlayer() {
+        return mNextPlayer;
+    }
+
+    @Override
+    public GameAi.GameAiInterface createGameAfterMove(GameAi.MoveInterface move) {
+        MnkGame game = new MnkGame(this);
+        game.set(getCell((Move) move), move.getPlayer());
+        game.mNextPlayer = getPlayerAfter(move.getPlayer());
+        return game;
+    }
+
+    @Override
+    public GameAi.GameAiInterface createSearchCopy() {
+        MnkGame game = new MnkGame(this);
+        game.mSearchMoves = new int[mCells.length];
+        return game;
+    }
+
+    @Override
+    public void makeSearchMove(int cell) {
+        set(cell, mNextPlayer);
+        mSearchMoves[mSearchMoveCount++] = cell;
+        mNextPlayer = getPlayerAfter(mNextPlayer);
+    }
+
+    @Override
+    public void unmakeSearchMove() {
+        int cell = mSearchMoves[--mSearchMoveCount];
+        mNextPlayer = mCells[cell];
+        clear(cell);
+    }
+
+    @Override
+    public ArrayList<GameAi.MoveInterface> getAvailableMoves() {
+        ArrayList<GameAi.MoveInterface> availableMoves = new ArrayList<>(mEmptyCount);
+        int columns = mWindows.columns;
+        for (int cell = 0; cell < mCells.length; cell++) {
+            if (mCells[cell] == 0) {
+                availableMoves.add(new Move(mNextPlayer, cell / columns, cell % columns));
+            }
+        }
+        return availableMoves;
+    }
+
+    @Override
+    public int getMaxMoveCount() {
+        return mCells.length;
+    }
+
+    @Override
+    public int getAvailableMoves(int[] cells) {
+        int count = 0;
+        for (int cell = 0; cell < mCells.length; cell++) {
+            if (mCells[cell] == 0) {
+                cells[count++] = cell;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * The cell of the move, numbered across the rows
+     */
+    @Override
+    public int encodeMove(GameAi.MoveInterface move) {
+        return getCell((Move) move);
+    }
+
+    @Override
+    public GameAi.MoveInterface decodeMove(int cell) {
+        return new Move(mNextPlayer, cell / mWindows.columns, cell % mWindows.columns);
+    }
+
+    @Override
+    public boolean isWinningMove(GameAi.MoveInterface testMove) {
+        return isValidMove(testMove) && isWinningMove(getCell((Move) testMove), testMove.getPlayer());
+    }
+
+    @Override
+    public boolean isWinningMove(int cell) {
+        return isWinningMove(cell, mNextPlayer);
+    }
+
+    @Override
+    public boolean isDrawMove(GameAi.MoveInterface testMove) {
+        return isValidMove(testMove) && isDrawMove(getCell((Move) testMove), testMove.getPlayer());
+    }
+
+    @Override
+    public boolean isDrawMove(int cell) {
+        return isDrawMove(cell, mNextPlayer);
+    }
+
+    private boolean isWinningMove(int cell, int player) {
+        byte[] counts = player == 1 ? mPlayer1Counts : mPlayer2Counts;
+        int[] windows = mWindows.cellWindows[cell];
+        int almostWon = mWindows.winLength - 1;
+        for (int idx = 0; idx < windows.length; idx++) {
+            if (counts[windows[idx]] == almostWon) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean isDrawMove(int cell, int player) {
+        byte[] counts = player == 1 ? mPlayer1Counts : mPlayer2Counts;
+        byte[] opponentCounts = player == 1 ? mPlayer2Counts : mPlayer1Counts;
+        int blockedWindows = 0;
+        int[] windows = mWindows.cellWindows[cell];
+        for (int idx = 0; idx < windows.length; idx++) {
+            if (counts[windows[idx]] == 0 && opponentCounts[windows[idx]] != 0) {
+                blockedWindows++;
+            }
+        }
+        return mOpenWindows == blockedWindows;
+    }
+
+    /**
+     * The open-windows evaluation: the weights of the windows only the player has squares in, less
+     * the weights of the windows only the opponent has squares in
+     */
+    @Override
+    public double getGameValue(int player) {
+        return player == 1 ? mEvaluation : -mEvaluation;
+    }
+
+    /**
+     * The number of windows through the square, which is highest in the middle of the board
+     */
+    @Override
+    public int getMovePriority(int cell) {
+        return mWindows.cellWindows[cell].length;
+    }
+
+    /**
+     * Set how the GameAi finds moves for this game
+     *
+     * @param strategy
+     */
+    public void setAiStrategy(GameAi.Strategy strategy) {
+        mAiStrategy = strategy;
+    }
+
+    @Override
+    public GameAi.Strategy getAiStrategy() {
+        return mAiStrategy;
+    }
+
+    @Override
+    public long getGameId() {
+        return mGameId;
+    }
+
+    @Override
+    public int getGeneration() {
+        return mGeneration;
+    }
+
+    @Override
+    public long getPositionHash() {
+        return mNextPlayer == 2 ? mHash ^ Zobrist.PLAYER_2_TO_MOVE : mHash;
+    }
+
+    /**
+     * No m,n,k-game has been solved ahead of time, every position is searched
+     */
+    @Override
+    public GameAi.MoveInterface getSolvedMove(Random random) {
+        return null;
+    }
+
+    @Override
+    public void onAiFinishEvent(GameAi.AiFinishEvent aiFinishEvent) {
+        if (aiFinishEvent.gameId != mGameId || aiFinishEvent.generation != mGeneration) {
+            Log.d(TAG, "Dropped a GameAi move for an earlier state of the game");
+            return;
+        }
+        if (aiFinishEvent.move == null) {
+            Log.e(TAG, "The GameAi failed to find a move");
+        } else if (aiFinishEvent.move instanceof Move) {
+            if (!makeMove((Move) aiFinishEvent.move)) {
+                Log.e(TAG, "The GameAi move is not allowed!");
+            }
+        }
+    }
+
+    private void set(int cell, int player) {
+        byte[] counts = player == 1 ? mPlayer1Counts : mPlayer2Counts;
+        byte[] opponentCounts = player == 1 ? mPlayer2Counts : mPlayer1Counts;
+        int[] windows = mWindows.cellWindows[cell];
+        for (int idx = 0; idx < windows.length; idx++) {
+            int window = windows[idx];
+            mEvaluation -= getWindowValue(window);
+            if (counts[window]++ == 0 && opponentCounts[window] != 0) {
+                mOpenWindows--;     // the window now holds squares of both players
+            }
+            mEvaluation += getWindowValue(window);
+        }
+        mCells[cell] = (byte) player;
+        mEmptyCount--;
+        mHash ^= mWindows.keys[2 * cell + player - 1];
+    }
+
+    private void clear(int cell) {
+        int player = mCells[cell];
+        byte[] counts = player == 1 ? mPlayer1Counts : mPlayer2Counts;
+        byte[] opponentCounts = player == 1 ? mPlayer2Counts : mPlayer1Counts;
+        int[] windows = mWindows.cellWindows[cell];
+        for (int idx = 0; idx < windows.length; idx++) {
+            int window = windows[idx];
+            mEvaluation -= getWindowValue(window);
+            if (--counts[window] == 0 && opponentCounts[window] != 0) {
+                mOpenWindows++;
+            }
+            mEvaluation += getWindowValue(window);
+        }
+        mCells[cell] = 0;
+        mEmptyCount++;
+        mHash ^= mWindows.keys[2 * cell + player - 1];
+    }
+
+    /**
+     * The value of a window to player 1
+     */
+    private int getWindowValue(int window) {
+        int player1Count = mPlayer1Counts[window];
+        int player2Count = mPlayer2Counts[window];
+        if (player2Count == 0) {
+            return mWindows.weights[player1Count];
+        } else if (player1Count == 0) {
+            return -mWindows.weights[player2Count];
+        }
+        return 0;
+    }
+
+    private int getCell(Move move) {
+        return move.row * mWindows.columns + move.column;
+    }
+
+    private boolean isOnBoard(int row, int column) {
+        return row >= 0 && row < mWindows.rows && column >= 0 && column < mWindows.columns;
+    }
+
+    private boolean isValidMove(GameAi.MoveInterface testMove) {
+        Move move = (Move) testMove;
+        return isOnBoard(move.row, move.column)
+                && mCells[getCell(move)] == 0
+                && (mState == State.SET_UP || mState == State.IN_PROGRESS);
+    }
+
+    private static int getPlayerAfter(int player) {
+        return player == 1 ? 2 : 1;
+    }
+
+    private static synchronized Windows getWindows(int rows, int columns, int winLength) {
+        long key = ((long) rows << 40) | ((long) columns << 16) | winLength;
+        Windows windows = WINDOWS.get(key);
+        if (windows == null) {
+            windows = new Windows(rows, columns, winLength);
+            WINDOWS.put(key, windows);
+        }
+        return windows;
+    }
+
+    /**
+     * The windows of one board shape, shared by every game of that shape
+     */
+    private static final class Windows {
+        private static final int[][] DIRECTIONS = {{0, 1}, {1, 0}, {1, 1}, {1, -1}};
+
+        private final int rows;
+        private final int columns;
+        private final int winLength;
+        private final int windowCount;
+        private final int[][] cellWindows;
+        private final int[] weights;
+        private final long[] keys;
+        private final long emptyKey;
+
+        Windows(int rows, int columns, int winLength) {
+            this.rows = rows;
+            this.columns = columns;
+            this.winLength = winLength;
+
+            int cellCount = rows * columns;
+            ArrayList<int[]> windows = new ArrayList<>();
+            for (int[] direction : DIRECTIONS) {
+                if (winLength == 1 && direction != DIRECTIONS[0]) {
+                    break;  // a single square is the same window in every direction
+                }
+                for (int row = 0; row < rows; row++) {
+                    for (int column = 0; column < columns; column++) {
+                        int lastRow = row + (winLength - 1) * direction[0];
+                        int lastColumn = column + (winLength - 1) * direction[1];
+                        if (lastRow >= rows || lastColumn < 0 || lastColumn >= columns) {
+                            continue;
+                        }
+                        int[] window = new int[winLength];
+                        for (int idx = 0; idx < winLength; idx++) {
+                            window[idx] = (row + idx * direction[0]) * columns + column + idx * direction[1];
+                        }
+                        windows.add(window);
+                    }
+                }
+            }
+
+            int[] cellWindowCounts = new int[cellCount];
+            for (int[] window : windows) {
+                for (int cell : window) {
+                    cellWindowCounts[cell]++;
+                }
+            }
+            cellWindows = new int[cellCount][];
+            for (int cell = 0; cell < cellCount; cell++) {
+                cellWindows[cell] = new int[cellWindowCounts[cell]];
+                cellWindowCounts[cell] = 0;
+            }
+            for (int window = 0; window < windows.size(); window++) {
+                for (int cell : windows.get(window)) {
+                    cellWindows[cell][cellWindowCounts[cell]++] = window;
+                }
+            }
+            windowCount = windows.size();
+
+            // each extra square is worth 8 times more, capped well below GameAi's heuristic limit
+            weights = new int[winLength + 1];
+            for (int squares = 1; squares <= winLength; squares++) {
+                weights[squares] = 1 << Math.min(3 * (squares - 1), 15);
+            }
+
+            long seed = ((long) rows << 40) | ((long) columns << 16) | winLength;
+            keys = Zobrist.createKeys(seed, 2 * cellCount + 1);
+            emptyKey = keys[2 * cellCount];
+        }
+    }
+}
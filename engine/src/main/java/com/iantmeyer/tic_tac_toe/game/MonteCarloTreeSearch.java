@@ -0,0 +1,358 @@
+package com.iantmeyer.tic_tac_toe.game;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+
+/**
+ * Monte Carlo tree search with UCT selection, the GameAi.Strategy.MONTE_CARLO strategy
+ * <br><br>
+ * Each playout walks down the tree choosing the child with the best upper confidence bound,
+ * expands one untried move, and finishes the game with uniformly random moves. The result is
+ * added to every node on the path. After the budget runs out the most visited root move is played.
+ * <br><br>
+ * Unlike the negamax search this needs no evaluation function and its cost does not grow with the
+ * depth of the game tree, so it gives reasonable moves on boards far too large to search, within
+ * a predictable number of playouts or milliseconds.
+ * <br><br>
+ * With a ForkJoinPool, one worker per pool thread runs playouts on its own copy of the game, all
+ * sharing one tree. Node statistics are updated with atomic adds, without locks. A node's visit is
+ * counted on the way down, before its result is known: this virtual loss makes the node look
+ * worse to the other workers until the result is added, spreading them over different branches.
+ * Only expanding a node takes its lock.
+ * <br><br>
+ * Scores are counted in half points: 2 for a win, 1 for a draw and 0 for a loss, always from the
+ * point of view of the player who made the move leading to the node.
+ */
+final class MonteCarloTreeSearch {
+    private static final String TAG = "MonteCarloTreeSearch";
+
+    /**
+     * The UCT exploration constant, sqrt(2) for rewards between 0 and 1
+     */
+    static final double EXPLORATION = Math.sqrt(2);
+
+    private static final int DEADLINE_CHECK_INTERVAL = 64;
+
+    private static final int LOSS = 0;
+    private static final int DRAW = 1;
+    private static final int WIN = 2;
+    private static final int UNKNOWN = -1;
+
+    private static final int NO_MOVE = -1;
+
+    private final GameAi.GameAiInterface mGame;
+    private final Random mRandom;
+    private final Node mRoot;
+    private final AtomicInteger mStartedPlayouts = new AtomicInteger();
+    private final AtomicInteger mPlayouts = new AtomicInteger();
+
+    /**
+     * @param game   a search copy, which is changed during the search and restored afterwards
+     * @param random
+     */
+    MonteCarloTreeSearch(GameAi.GameAiInterface game, Random random) {
+        mGame = game;
+        mRandom = random;
+        int[] moves = new int[game.getMaxMoveCount()];
+        int moveCount = game.getAvailableMoves(moves);
+        mRoot = new Node(null, NO_MOVE, 3 - game.getNextPlayer(), UNKNOWN, Arrays.copyOf(moves, moveCount));
+    }
+
+    /**
+     * A search continuing from a subtree of an earlier search, whose playouts count toward the budget
+     */
+    private MonteCarloTreeSearch(GameAi.GameAiInterface game, Random random, Node root) {
+        mGame = game;
+        mRandom = random;
+        mRoot = root;
+        mStartedPlayouts.set(root.visits);
+    }
+
+    /**
+     * Continue the search after a move, keeping the playouts through it
+     * <br><br>
+     * This search must have stopped, and is not used again.
+     *
+     * @param move the move played from this search's root position
+     * @param game a search copy of the position after the move
+     * @param random
+     * @return the search, or null when the move was never expanded or ended the game
+     */
+    MonteCarloTreeSearch getSubtree(GameAi.MoveInterface move, GameAi.GameAiInterface game, Random random) {
+        int encodedMove = game.encodeMove(move);
+        for (Node child : mRoot.children) {
+            if (child.move == encodedMove && child.result == UNKNOWN) {
+                child.parent = null;
+                Log.i(TAG, "Reused " + child.visits + " playouts");
+                return new MonteCarloTreeSearch(game, random, child);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Run playouts until either budget is spent
+     *
+     * @param maxPlayouts   the number of playouts, or 0 for no limit
+     * @param deadlineNanos a System.nanoTime() deadline, or 0 for no deadline
+     * @param pool          the threads to search with, or null to search on the calling thread
+     * @param handle        stops the search when cancelled, or null
+     * @return the most visited root move, or null when there is no move or the search was cancelled
+     */
+    GameAi.MoveInterface search(int maxPlayouts, long deadlineNanos, ForkJoinPool pool, SearchHandle handle) {
+        if (pool == null) {
+            new Worker(mGame, mRandom, maxPlayouts, deadlineNanos, handle).compute();
+        } else {
+            final Worker[] workers = new Worker[pool.getParallelism()];
+            for (int idx = 0; idx < workers.length; idx++) {
+                workers[idx] = new Worker(mGame.createSearchCopy(), new Random(mRandom.nextLong()),
+                        maxPlayouts, deadlineNanos, handle);
+            }
+            pool.invoke(new RecursiveAction() {
+                @Override
+                protected void compute() {
+                    invokeAll(workers);
+                }
+            });
+        }
+        Log.i(TAG, "Ran " + mPlayouts.get() + " playouts");
+        if (handle != null && handle.isCancelled()) {
+            return null;
+        }
+        return getMostVisitedMove();
+    }
+
+    int getPlayouts() {
+        return mPlayouts.get();
+    }
+
+    /**
+     * The playouts through the root, including those of an earlier search whose subtree this is
+     */
+    int getRootVisits() {
+        return mRoot.visits;
+    }
+
+    private GameAi.MoveInterface getMostVisitedMove() {
+        Node bestChild = null;
+        for (Node child : mRoot.children) {
+            if (bestChild == null || child.visits > bestChild.visits) {
+                bestChild = child;
+            }
+        }
+        return bestChild != null ? mGame.decodeMove(bestChild.move) : null;
+    }
+
+    /**
+     * Runs playouts on its own copy of the game until the shared budget is spent
+     */
+    private final class Worker extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final GameAi.GameAiInterface game;
+        private final Random random;
+        private final int maxPlayouts;
+        private final long deadlineNanos;
+        private final SearchHandle handle;
+        private final int[] moves;  // for the simulation, reused by every playout
+
+        Worker(GameAi.GameAiInterface game, Random random, int maxPlayouts, long deadlineNanos,
+               SearchHandle handle) {
+            this.game = game;
+            this.random = random;
+            this.maxPlayouts = maxPlayouts;
+            this.deadlineNanos = deadlineNanos;
+            this.handle = handle;
+            moves = new int[game.getMaxMoveCount()];
+        }
+
+        @Override
+        protected void compute() {
+            int playouts = 0;
+            while (maxPlayouts <= 0 || mStartedPlayouts.getAndIncrement() < maxPlayouts) {
+                if (handle != null && handle.isCancelled()) {
+                    break;
+                }
+                if (deadlineNanos != 0 && playouts % DEADLINE_CHECK_INTERVAL == 0
+                        && mPlayouts.get() > 0 && System.nanoTime() >= deadlineNanos) {
+                    break;
+                }
+                playout();
+                playouts++;
+                mPlayouts.incrementAndGet();
+            }
+        }
+
+        private void playout() {
+            // selection, counting a visit to each node on the way down
+            Node node = mRoot;
+            node.addVisit();
+            int depth = 0;
+            while (node.result == UNKNOWN && node.isFullyExpanded()) {
+                node = node.selectChild();
+                node.addVisit();
+                game.makeSearchMove(node.move);
+                depth++;
+            }
+
+            // expansion
+            if (node.result == UNKNOWN) {
+                int move = node.takeUntriedMove(random);
+                if (move != NO_MOVE) {
+                    int result = game.isWinningMove(move) ? WIN : game.isDrawMove(move) ? DRAW : UNKNOWN;
+                    int player = game.getNextPlayer();
+                    game.makeSearchMove(move);
+                    depth++;
+                    int[] untriedMoves = null;
+                    if (result == UNKNOWN) {
+                        untriedMoves = Arrays.copyOf(moves, game.getAvailableMoves(moves));
+                    }
+                    Node child = new Node(node, move, player, result, untriedMoves);
+                    child.addVisit();
+                    node.addChild(child);
+                    node = child;
+                }
+            }
+
+            // simulation, from the point of view of the player who moved into the node
+            int result = node.result != UNKNOWN ? node.result : simulate(node.player);
+
+            // backpropagation, the visits have already been counted
+            while (node != null) {
+                node.addScore(result);
+                result = WIN - result;
+                node = node.parent;
+            }
+            for (; depth > 0; depth--) {
+                game.unmakeSearchMove();
+            }
+        }
+
+        /**
+         * Finish the game with random moves, then take them back
+         *
+         * @return LOSS, DRAW or WIN for the player
+         */
+        private int simulate(int player) {
+            int result = DRAW;
+            int moveCount = 0;
+            while (true) {
+                int availableCount = game.getAvailableMoves(moves);
+                if (availableCount == 0) {
+                    break;
+                }
+                int move = moves[random.nextInt(availableCount)];
+                if (game.isWinningMove(move)) {
+                    result = game.getNextPlayer() == player ? WIN : LOSS;
+                    break;
+                } else if (game.isDrawMove(move)) {
+                    break;
+                }
+                game.makeSearchMove(move);
+                moveCount++;
+            }
+            for (; moveCount > 0; moveCount--) {
+                game.unmakeSearchMove();
+            }
+            return result;
+        }
+    }
+
+    /**
+     * A position in the search tree, reached by playing move from the parent's position
+     */
+    private static final class Node {
+        private static final Node[] NO_CHILDREN = new Node[0];
+        private static final AtomicIntegerFieldUpdater<Node> VISITS =
+                AtomicIntegerFieldUpdater.newUpdater(Node.class, "visits");
+        private static final AtomicIntegerFieldUpdater<Node> SCORE =
+                AtomicIntegerFieldUpdater.newUpdater(Node.class, "score");
+
+        private Node parent;    // only cleared by getSubtree(), when no worker is running
+        private final int move;     // NO_MOVE for the root
+        private final int player;   // who moved into this node
+        private final int result;   // LOSS, DRAW or WIN once the game is over, otherwise UNKNOWN
+        private final int[] untriedMoves;   // the first untriedCount, guarded by this
+        private int untriedCount;           // guarded by this
+        private int expandingCount;     // moves taken but not yet added as children, guarded by this
+        private volatile boolean fullyExpanded;
+        private volatile Node[] children = NO_CHILDREN;     // replaced, never changed, by addChild
+        private volatile int visits;
+        private volatile int score;
+
+        Node(Node parent, int move, int player, int result, int[] untriedMoves) {
+            this.parent = parent;
+            this.move = move;
+            this.player = player;
+            this.result = result;
+            this.untriedMoves = untriedMoves;
+            untriedCount = untriedMoves != null ? untriedMoves.length : 0;
+            fullyExpanded = untriedCount == 0;
+        }
+
+        void addVisit() {
+            VISITS.incrementAndGet(this);
+        }
+
+        void addScore(int result) {
+            SCORE.addAndGet(this, result);
+        }
+
+        /**
+         * Whether every move has been expanded, and at least one child is in the tree
+         */
+        boolean isFullyExpanded() {
+            return fullyExpanded && children.length > 0;
+        }
+
+        /**
+         * Remove a random untried move
+         *
+         * @return the move, or NO_MOVE when every move has been taken
+         */
+        synchronized int takeUntriedMove(Random random) {
+            if (untriedCount == 0) {
+                return NO_MOVE;
+            }
+            int idx = random.nextInt(untriedCount);
+            int move = untriedMoves[idx];
+            untriedMoves[idx] = untriedMoves[--untriedCount];
+            expandingCount++;
+            return move;
+        }
+
+        synchronized void addChild(Node child) {
+            Node[] newChildren = new Node[children.length + 1];
+            System.arraycopy(children, 0, newChildren, 0, children.length);
+            newChildren[children.length] = child;
+            children = newChildren;
+            expandingCount--;
+            fullyExpanded = untriedCount == 0 && expandingCount == 0;
+        }
+
+        /**
+         * The child with the highest upper confidence bound
+         */
+        Node selectChild() {
+            Node[] children = this.children;
+            double logVisits = Math.log(visits);
+            Node bestChild = null;
+            double bestBound = Double.NEGATIVE_INFINITY;
+            for (int idx = 0; idx < children.length; idx++) {
+                Node child = children[idx];
+                int childVisits = child.visits;
+                double bound = child.score / (2.0 * childVisits)
+                        + EXPLORATION * Math.sqrt(logVisits / childVisits);
+                if (bound > bestBound) {
+                    bestBound = bound;
+                    bestChild = child;
+                }
+            }
+            return bestChild;
+        }
+    }
+}
@@ -0,0 +1,432 @@
+package com.iantmeyer.tic_tac_toe.game;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.zip.CRC32;
+
+/**
+ * An append-only log of the changes to a TicTacToeGame, so that a game survives the process being
+ * killed at any time
+ * <br><br>
+ * The journal starts from a checkpoint, a GameSnapshot, followed by the moves and player type
+ * changes made since. A move takes 2 or 3 bytes. Recovering replays them on the checkpoint.
+ * Taking a new checkpoint starts a new journal, which is written to a temporary file and renamed
+ * over the old one.
+ * <br><br>
+ * Changes are only buffered by the caller, a background thread writes and syncs them. Changes
+ * made while a sync is in progress are committed together in the next group, each group framed
+ * by its length and a CRC32. A group torn by a crash fails its check and is dropped with
+ * everything after it.
+ * <br><br>
+ * A write which fails stays pending and is retried with the next one. While a checkpoint is
+ * pending, changes are never appended to the journal of the checkpoint before it.
+ * <br><br>
+ * file: int magic, byte version, unsigned short checkpoint length, the GameSnapshot record,
+ * then groups of: unsigned short length, the entries, int CRC32 of the entries
+ * <br><br>
+ * entry: byte type << 4 | arguments, followed by a move's cell as a varint
+ */
+public final class MoveJournal {
+    private static final String TAG = "MoveJournal";
+
+    private static final int MAGIC = 0x5454544A;   // "TTTJ"
+    private static final int VERSION = 1;
+    private static final String TEMP_SUFFIX = ".tmp";
+    private static final int MAX_GROUP_BYTES = 0xFFFF;
+
+    private static final int TYPE_MOVE = 1;             // arguments: player
+    private static final int TYPE_PLAYER_HUMAN = 2;     // arguments: player << 1 | human
+
+    private final File mFile;
+    private final File mTempFile;
+    private final Executor mExecutor;
+
+    // guarded by mLock, the changes not yet handed to the writer
+    private final Object mLock = new Object();
+    private ByteArrayOutputStream mPendingEntries = new ByteArrayOutputStream();
+    private GameSnapshot mPendingCheckpoint;
+    private boolean mWriteScheduled;
+
+    // guarded by mWriteLock, the file being appended to
+    private final Object mWriteLock = new Object();
+    private FileOutputStream mOut;
+    private long mValidLength = -1;     // set by recover(), the length to cut a torn tail to
+    private int mGroupCount;
+
+    private final Runnable mWriteTask = new Runnable() {
+        @Override
+        public void run() {
+            writePending();
+        }
+    };
+
+    /**
+     * A journal writing on its own background thread
+     *
+     * @param file
+     */
+    public MoveJournal(File file) {
+        this(file, createExecutor());
+    }
+
+    /**
+     * @param file
+     * @param executor runs the writes, off the caller's thread, one at a time
+     */
+    public MoveJournal(File file, Executor executor) {
+        mFile = file;
+        mTempFile = new File(file.getPath() + TEMP_SUFFIX);
+        mExecutor = executor;
+    }
+
+    private static Executor createExecutor() {
+        return Executors.newSingleThreadExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, TAG);
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    /**
+     * Rebuild the game journaled, by replaying the changes on the checkpoint
+     * <br><br>
+     * Changes after a torn or corrupt group are lost, and are cut off the journal before it is
+     * appended to again. No GameAi move is started, see TicTacToeGame.resume().
+     *
+     * @return the game, or null when there is no journal or its checkpoint can not be read
+     */
+    public TicTacToeGame recover() {
+        if (!mFile.exists()) {
+            return null;
+        }
+        byte[] journal;
+        try {
+            RandomAccessFile file = new RandomAccessFile(mFile, "r");
+            try {
+                journal = new byte[(int) file.length()];
+                file.readFully(journal);
+            } finally {
+                file.close();
+            }
+        } catch (IOException e) {
+            Log.e(TAG, "Failed to read " + mFile, e);
+            return null;
+        }
+
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(journal));
+        TicTacToeGame game;
+        int offset;
+        try {
+            if (in.readInt() != MAGIC || in.readUnsignedByte() != VERSION) {
+                throw new IOException("Not a move journal");
+            }
+            byte[] checkpoint = new byte[in.readUnsignedShort()];
+            in.readFully(checkpoint);
+            game = TicTacToeGame.restore(GameSnapshot.fromBytes(checkpoint));
+            offset = journal.length - in.available();
+        } catch (IOException e) {
+            Log.e(TAG, "Failed to read the checkpoint of " + mFile, e);
+            return null;
+        }
+
+        int changes = 0;
+        try {
+            while (in.available() > 0) {
+                byte[] group = new byte[in.readUnsignedShort()];
+                in.readFully(group);
+                CRC32 crc = new CRC32();
+                crc.update(group);
+                if (in.readInt() != (int) crc.getValue()) {
+                    throw new IOException("Corrupt group");
+                }
+                changes += replay(game, group);
+                offset = journal.length - in.available();
+            }
+        } catch (IOException e) {
+            Log.e(TAG, "Dropped " + (journal.length - offset) + " bytes after " + changes
+                    + " changes", e);
+        }
+        synchronized (mWriteLock) {
+            mValidLength = offset;
+        }
+        Log.i(TAG, "Replayed " + changes + " changes");
+        return game;
+    }
+
+    /**
+     * @return the number of changes replayed
+     */
+    private static int replay(TicTacToeGame game, byte[] group) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(group));
+        int changes = 0;
+        while (in.available() > 0) {
+            int header = in.readUnsignedByte();
+            int player;
+            switch (header >> 4) {
+                case TYPE_MOVE:
+                    player = header & 3;
+                    int cell = readVarint(in);
+                    if (!game.replayMove(cell, player)) {
+                        throw new IOException("Invalid move to " + cell + " for player " + player);
+                    }
+                    break;
+                case TYPE_PLAYER_HUMAN:
+                    player = (header >> 1) & 3;
+                    if (player != 1 && player != 2) {
+                        throw new IOException("Invalid player " + player);
+                    }
+                    game.replayPlayerHuman(player, (header & 1) != 0);
+                    break;
+                default:
+                    throw new IOException("Unknown entry " + header);
+            }
+            changes++;
+        }
+        return changes;
+    }
+
+    /**
+     * Journal a move
+     *
+     * @param cell   BitBoard cell
+     * @param player
+     */
+    public void appendMove(int cell, int player) {
+        synchronized (mLock) {
+            mPendingEntries.write(TYPE_MOVE << 4 | player);
+            writeVarint(mPendingEntries, cell);
+            scheduleWrite();
+        }
+    }
+
+    /**
+     * Journal a change of player type
+     *
+     * @param player
+     * @param human
+     */
+    public void appendPlayerHuman(int player, boolean human) {
+        synchronized (mLock) {
+            mPendingEntries.write(TYPE_PLAYER_HUMAN << 4 | player << 1 | (human ? 1 : 0));
+            scheduleWrite();
+        }
+    }
+
+    /**
+     * Start a new journal from a snapshot, which replaces every change journaled so far
+     *
+     * @param snapshot
+     */
+    public void checkpoint(GameSnapshot snapshot) {
+        synchronized (mLock) {
+            mPendingEntries = new ByteArrayOutputStream();
+            mPendingCheckpoint = snapshot;
+            scheduleWrite();
+        }
+    }
+
+    /**
+     * Write the waiting changes, if any, on the calling thread
+     */
+    public void flush() {
+        writePending();
+    }
+
+    /**
+     * The number of checkpoints and groups of changes written
+     */
+    int getGroupCount() {
+        synchronized (mWriteLock) {
+            return mGroupCount;
+        }
+    }
+
+    // guarded by mLock
+    private void scheduleWrite() {
+        if (!mWriteScheduled) {
+            mWriteScheduled = true;
+            mExecutor.execute(mWriteTask);
+        }
+    }
+
+    private void writePending() {
+        // taking the changes under the write lock keeps the writes in the order of the changes
+        synchronized (mWriteLock) {
+            GameSnapshot checkpoint;
+            byte[] entries;
+            synchronized (mLock) {
+                checkpoint = mPendingCheckpoint;
+                entries = mPendingEntries.toByteArray();
+                mPendingCheckpoint = null;
+                mPendingEntries.reset();
+                mWriteScheduled = false;
+            }
+            try {
+                if (checkpoint != null) {
+                    writeCheckpoint(checkpoint, entries);
+                    mGroupCount++;
+                } else if (entries.length > 0) {
+                    appendGroups(entries);
+                    mGroupCount++;
+                }
+            } catch (IOException e) {
+                Log.e(TAG, "Failed to write " + mFile + ", retrying with the next write", e);
+                closeQuietly();
+                synchronized (mLock) {
+                    // a newer checkpoint replaces these changes, otherwise they go ahead of any since
+                    if (mPendingCheckpoint == null) {
+                        mPendingCheckpoint = checkpoint;
+                        byte[] newer = mPendingEntries.toByteArray();
+                        mPendingEntries = new ByteArrayOutputStream(entries.length + newer.length);
+                        mPendingEntries.write(entries, 0, entries.length);
+                        mPendingEntries.write(newer, 0, newer.length);
+                    }
+                }
+            }
+        }
+    }
+
+    // guarded by mWriteLock
+    private void writeCheckpoint(GameSnapshot checkpoint, byte[] entries) throws IOException {
+        closeQuietly();
+        byte[] record = checkpoint.toBytes();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(MAGIC);
+        out.writeByte(VERSION);
+        out.writeShort(record.length);
+        out.write(record);
+        writeGroups(out, entries);
+
+        FileOutputStream file = new FileOutputStream(mTempFile);
+        try {
+            file.write(bytes.toByteArray());
+            file.getFD().sync();
+        } finally {
+            file.close();
+        }
+        if (!mTempFile.renameTo(mFile)) {
+            mTempFile.delete();
+            throw new IOException("Failed to rename " + mTempFile);
+        }
+        mValidLength = -1;
+    }
+
+    // guarded by mWriteLock
+    private void appendGroups(byte[] entries) throws IOException {
+        if (mOut == null) {
+            if (!mFile.exists()) {
+                // nothing to replay the changes on, until the next checkpoint
+                Log.e(TAG, "Dropped changes journaled before a checkpoint");
+                return;
+            }
+            if (mValidLength >= 0) {
+                RandomAccessFile file = new RandomAccessFile(mFile, "rw");
+                try {
+                    file.setLength(mValidLength);
+                } finally {
+                    file.close();
+                }
+                mValidLength = -1;
+            }
+            mOut = new FileOutputStream(mFile, true);
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(entries.length + 6);
+        writeGroups(new DataOutputStream(bytes), entries);
+        long length = mOut.getChannel().size();
+        try {
+            mOut.write(bytes.toByteArray());
+            mOut.getFD().sync();
+        } catch (IOException e) {
+            // cut off whatever part of the groups made it, before appending again
+            mValidLength = length;
+            throw e;
+        }
+    }
+
+    /**
+     * Frame entries as groups, splitting them when there are too many for one
+     */
+    private static void writeGroups(DataOutputStream out, byte[] entries) throws IOException {
+        int offset = 0;
+        while (offset < entries.length) {
+            int length = getGroupLength(entries, offset);
+            CRC32 crc = new CRC32();
+            crc.update(entries, offset, length);
+            out.writeShort(length);
+            out.write(entries, offset, length);
+            out.writeInt((int) crc.getValue());
+            offset += length;
+        }
+    }
+
+    /**
+     * The length of the whole entries from an offset which fit in a group
+     */
+    private static int getGroupLength(byte[] entries, int offset) {
+        if (entries.length - offset <= MAX_GROUP_BYTES) {
+            return entries.length - offset;
+        }
+        int length = 0;
+        int idx = offset;
+        while (idx < entries.length) {
+            int end = idx + 1;
+            if (entries[idx] >> 4 == TYPE_MOVE) {
+                while ((entries[end] & 0x80) != 0) {
+                    end++;
+                }
+                end++;
+            }
+            if (end - offset > MAX_GROUP_BYTES) {
+                break;
+            }
+            length = end - offset;
+            idx = end;
+        }
+        return length;
+    }
+
+    // guarded by mWriteLock
+    private void closeQuietly() {
+        if (mOut != null) {
+            try {
+                mOut.close();
+            } catch (IOException e) {
+                Log.e(TAG, "Failed to close " + mFile, e);
+            }
+            mOut = null;
+        }
+    }
+
+    private static void writeVarint(ByteArrayOutputStream out, int value) {
+        while ((value & ~0x7F) != 0) {
+            out.write((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+
+    private static int readVarint(DataInputStream in) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Invalid varint");
+    }
+}
@@ -0,0 +1,156 @@
+package com.iantmeyer.tic_tac_toe.game;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Perfect play for every reachable 3x3 position, solved at build time
+ * <br><br>
+ * The table is generated by the generatePerfectPlayTable Gradle task (see buildSrc) and packaged
+ * as a Java resource. It holds only one position per symmetry class; loading it fills in the
+ * rotations and reflections, so that a lookup is a table index computed from the two bitboards.
+ * After loading, lookups take constant time and never allocate.
+ */
+public final class PerfectPlayTable {
+    private static final String TAG = "PerfectPlayTable";
+
+    static final String RESOURCE = "perfect_play_3x3.bin";
+    private static final int MAGIC = 0x54545433;   // "TTT3"
+    private static final int VERSION = 1;
+
+    public static final int SIZE = 3;
+
+    public static final int LOSS = 1;
+    public static final int DRAW = 2;
+    public static final int WIN = 3;
+
+    private static final int CELLS = SIZE * SIZE;
+    private static final int POSITIONS = 19683;  // 3^9
+
+    // the base-3 rank of a set of squares, each one counting as digit 1
+    private static final int[] RANKS = new int[1 << CELLS];
+
+    private static volatile short[] sTable;
+    private static boolean sLoaded;
+
+    static {
+        int[] powers = getPowers();
+        for (int bits = 0; bits < RANKS.length; bits++) {
+            for (int cell = 0; cell < CELLS; cell++) {
+                if ((bits & (1 << cell)) != 0) {
+                    RANKS[bits] += powers[cell];
+                }
+            }
+        }
+    }
+
+    private PerfectPlayTable() {
+        // discourage instantiation
+    }
+
+    /**
+     * Look up a 3x3 position
+     *
+     * @param ownBits      squares of the player to move
+     * @param opponentBits squares of the opponent
+     * @return the packed entry, or 0 when the position is unknown or the table is not available
+     */
+    public static int lookup(long ownBits, long opponentBits) {
+        short[] table = getTable();
+        if (table == null) {
+            return 0;
+        }
+        return table[RANKS[(int) ownBits] + 2 * RANKS[(int) opponentBits]];
+    }
+
+    /**
+     * The value of a position for the player to move
+     *
+     * @param entry a non-zero entry returned by lookup()
+     * @return LOSS, DRAW or WIN
+     */
+    public static int getValue(int entry) {
+        return entry >>> CELLS;
+    }
+
+    /**
+     * Every move reaching the value of the position fastest, or for a loss, slowest
+     *
+     * @param entry a non-zero entry returned by lookup()
+     * @return bit (row * 3 + column) set for each best move
+     */
+    public static int getBestMoves(int entry) {
+        return entry & ((1 << CELLS) - 1);
+    }
+
+    private static short[] getTable() {
+        short[] table = sTable;
+        if (table == null) {
+            synchronized (PerfectPlayTable.class) {
+                if (!sLoaded) {
+                    sLoaded = true;
+                    sTable = load();
+                }
+                table = sTable;
+            }
+        }
+        return table;
+    }
+
+    private static short[] load() {
+        InputStream resource = PerfectPlayTable.class.getResourceAsStream(RESOURCE);
+        if (resource == null) {
+            Log.e(TAG, "Perfect-play table " + RESOURCE + " is missing, the AI will search instead");
+            return null;
+        }
+        DataInputStream in = new DataInputStream(new BufferedInputStream(resource));
+        try {
+            if (in.readInt() != MAGIC || in.readShort() != VERSION) {
+                Log.e(TAG, "Perfect-play table " + RESOURCE + " has an unknown format");
+                return null;
+            }
+            int[] powers = getPowers();
+            BitBoard symmetries = new BitBoard(SIZE);
+            short[] table = new short[POSITIONS];
+            int count = in.readInt();
+            for (int idx = 0; idx < count; idx++) {
+                int rank = in.readUnsignedShort();
+                int entry = in.readUnsignedShort();
+                for (int symmetry = 0; symmetry < BitBoard.SYMMETRY_COUNT; symmetry++) {
+                    int transformedRank = 0;
+                    int transformedMoves = 0;
+                    for (int cell = 0; cell < CELLS; cell++) {
+                        int transformedCell = symmetries.transformCell(cell, symmetry);
+                        transformedRank += ((rank / powers[cell]) % 3) * powers[transformedCell];
+                        if ((entry & (1 << cell)) != 0) {
+                            transformedMoves |= 1 << transformedCell;
+                        }
+                    }
+                    table[transformedRank] = (short) ((getValue(entry) << CELLS) | transformedMoves);
+                }
+            }
+            Log.i(TAG, "Loaded perfect-play table with " + count + " positions");
+            return table;
+        } catch (IOException e) {
+            Log.e(TAG, "Could not read perfect-play table " + RESOURCE, e);
+            return null;
+        } finally {
+            try {
+                in.close();
+            } catch (IOException e) {
+                // nothing left to do
+            }
+        }
+    }
+
+    private static int[] getPowers() {
+        int[] powers = new int[CELLS];
+        powers[0] = 1;
+        for (int cell = 1; cell < CELLS; cell++) {
+            powers[cell] = powers[cell - 1] * 3;
+        }
+        return powers;
+    }
+}
@@ -0,0 +1,85 @@
+package com.iantmeyer.tic_tac_toe.game;
+
+/**
+ * How hard the GameAi searches for one move, so that games sharing a GameAiService can each be
+ * configured separately
+ * <br><br>
+ * A config is immutable, the with methods return a changed copy.
+ */
+public final class SearchConfig {
+
+    /**
+     * Search to the end of the game, ordering moves, with the default number of Monte Carlo playouts
+     */
+    public static final SearchConfig DEFAULT =
+            new SearchConfig(-1, 0, true, GameAi.DEFAULT_MONTE_CARLO_PLAYOUTS);
+
+    final int maxDepth;
+    final long timeBudgetMillis;
+    final boolean moveOrdering;
+    final int monteCarloPlayouts;
+
+    SearchConfig(int maxDepth, long timeBudgetMillis, boolean moveOrdering, int monteCarloPlayouts) {
+        this.maxDepth = maxDepth;
+        this.timeBudgetMillis = timeBudgetMillis;
+        this.moveOrdering = moveOrdering;
+        this.monteCarloPlayouts = Math.max(1, monteCarloPlayouts);
+    }
+
+    /**
+     * See GameAi.with()
+     *
+     * @param maxDepth the maximum depth of a negamax search, or -1 for no limit
+     * @return
+     */
+    public SearchConfig withMaxDepth(int maxDepth) {
+        return new SearchConfig(maxDepth, timeBudgetMillis, moveOrdering, monteCarloPlayouts);
+    }
+
+    /**
+     * See GameAi.makeAiMove()
+     *
+     * @param timeBudgetMillis the time budget, or 0 to search to the maximum depth or for the
+     *                         number of playouts
+     * @return
+     */
+    public SearchConfig withTimeBudget(long timeBudgetMillis) {
+        return new SearchConfig(maxDepth, timeBudgetMillis, moveOrdering, monteCarloPlayouts);
+    }
+
+    /**
+     * See GameAi.withMoveOrdering()
+     *
+     * @param moveOrdering
+     * @return
+     */
+    public SearchConfig withMoveOrdering(boolean moveOrdering) {
+        return new SearchConfig(maxDepth, timeBudgetMillis, moveOrdering, monteCarloPlayouts);
+    }
+
+    /**
+     * See GameAi.withMonteCarloPlayouts()
+     *
+     * @param playouts
+     * @return
+     */
+    public SearchConfig withMonteCarloPlayouts(int playouts) {
+        return new SearchConfig(maxDepth, timeBudgetMillis, moveOrdering, playouts);
+    }
+
+    public int getMaxDepth() {
+        return maxDepth;
+    }
+
+    public long getTimeBudgetMillis() {
+        return timeBudgetMillis;
+    }
+
+    public boolean isMoveOrdering() {
+        return moveOrdering;
+    }
+
+    public int getMonteCarloPlayouts() {
+        return monteCarloPlayouts;
+    }
+}
@@ -0,0 +1,63 @@
+package com.iantmeyer.tic_tac_toe.game;
+
+/**
+ * A search started by GameAi.makeAiMove()
+ * <br><br>
+ * The handle is tagged with the id and generation of the game it searches. Cancelling it stops
+ * the search at its next check, and a cancelled search never delivers its move, even if it had
+ * already finished.
+ */
+public final class SearchHandle {
+
+    private final long mGameId;
+    private final int mGeneration;
+    private volatile boolean mCancelled;
+    private volatile boolean mDone;
+
+    SearchHandle(long gameId, int generation) {
+        mGameId = gameId;
+        mGeneration = generation;
+    }
+
+    /**
+     * The GameAiInterface.getGameId() of the game searched
+     *
+     * @return
+     */
+    public long getGameId() {
+        return mGameId;
+    }
+
+    /**
+     * The GameAiInterface.getGeneration() of the game when the search started
+     *
+     * @return
+     */
+    public int getGeneration() {
+        return mGeneration;
+    }
+
+    /**
+     * Stop the search and drop its result
+     */
+    public void cancel() {
+        mCancelled = true;
+    }
+
+    public boolean isCancelled() {
+        return mCancelled;
+    }
+
+    /**
+     * Whether the search has delivered its move, or will never deliver one
+     *
+     * @return
+     */
+    public boolean isDone() {
+        return mDone;
+    }
+
+    void finish() {
+        mDone = true;
+    }
+}
@@ -0,0 +1,279 @@
+package com.iantmeyer.tic_tac_toe.game;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Plays computer against computer games headless, on every processor, e.g. to build a corpus of
+ * games for tuning and regression testing
+ * <br><br>
+ * Each worker thread has its own transposition table and Random, so the workers share nothing
+ * but the count of games to play and the output. A depth limited search clears the table before
+ * each game, and the ties of each game are broken by a Random seeded from the seed and the number
+ * of the game, so a game is the same whichever worker plays it. The first player alternates
+ * between games.
+ * <br><br>
+ * The games are written as lines of GameRecord.toString(), which GameHistoryStore.importGames()
+ * reads, in a GZIP stream. Each worker compresses its own batches of games into a complete GZIP
+ * member, which are concatenated in the order they finish, so compressing does not hold up the
+ * other workers.
+ */
+public final class SelfPlay {
+    private static final String TAG = "SelfPlay";
+
+    private static final int BATCH_CHARS = 256 * 1024;
+    private static final long REPORT_INTERVAL_MILLIS = 5000;
+
+    private final int mBoardSize;
+    private final SearchConfig mConfig;
+    private final int mThreadCount;
+    private final long mTableBytes;
+    private final long mSeed;
+
+    // shared by the workers of a run
+    private final AtomicLong mNextGame = new AtomicLong();
+    private final AtomicLong mFinishedGames = new AtomicLong();
+    private volatile Throwable mFailure;    // stops the workers
+
+    /**
+     * @param boardSize   the size of the boards played on
+     * @param config      how hard each move is searched for
+     * @param threadCount the number of games played at once, e.g. the number of processors
+     * @param tableBytes  the memory cap of each worker's transposition table, or 0 for none
+     * @param seed        seeds the tie breaks of every game
+     */
+    public SelfPlay(int boardSize, SearchConfig config, int threadCount, long tableBytes, long seed) {
+        if (boardSize < 1 || boardSize > BitBoard.MAX_SIZE || threadCount < 1) {
+            throw new IllegalArgumentException("Invalid SelfPlay: " + boardSize + "x" + boardSize + " board, "
+                    + threadCount + " threads");
+        }
+        mBoardSize = boardSize;
+        mConfig = config;
+        mThreadCount = threadCount;
+        mTableBytes = tableBytes;
+        mSeed = seed;
+    }
+
+    /**
+     * Play games, reporting the progress in the log
+     *
+     * @param gameCount
+     * @param out       receives the GZIP compressed games, and is not closed
+     * @return
+     * @throws IOException          when the games could not be written, after stopping the workers
+     * @throws IllegalStateException when the GameAi failed to find a move
+     * @throws InterruptedException
+     */
+    public Result play(long gameCount, OutputStream out) throws IOException, InterruptedException {
+        mNextGame.set(0);
+        mFinishedGames.set(0);
+        mFailure = null;
+        Worker[] workers = new Worker[mThreadCount];
+        Thread[] threads = new Thread[mThreadCount];
+        long startNanos = System.nanoTime();
+        for (int idx = 0; idx < mThreadCount; idx++) {
+            workers[idx] = new Worker(gameCount, out);
+            threads[idx] = new Thread(workers[idx], TAG + "-" + idx);
+            threads[idx].start();
+        }
+        try {
+            for (Thread thread : threads) {
+                while (thread.isAlive()) {
+                    thread.join(REPORT_INTERVAL_MILLIS);
+                    if (thread.isAlive()) {
+                        report(mFinishedGames.get(), gameCount, System.nanoTime() - startNanos);
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            // stop the workers claiming games
+            mNextGame.set(gameCount);
+            throw e;
+        }
+        out.flush();
+        if (mFailure instanceof IOException) {
+            throw (IOException) mFailure;
+        } else if (mFailure != null) {
+            throw new IllegalStateException("Self-play failed", mFailure);
+        }
+
+        Result result = new Result(System.nanoTime() - startNanos);
+        for (Worker worker : workers) {
+            result.add(worker.results);
+        }
+        Log.i(TAG, "Played " + result.getGameCount() + " games in " + result.getElapsedNanos() / 1000000
+                + " ms, " + Math.round(result.getGamesPerSecond()) + " games/s, player 1 won "
+                + result.getWins(1) + ", player 2 won " + result.getWins(2) + ", " + result.getDraws() + " draws");
+        return result;
+    }
+
+    private static void report(long finished, long gameCount, long elapsedNanos) {
+        Log.i(TAG, "Played " + finished + " of " + gameCount + " games, "
+                + Math.round(finished * 1e9 / elapsedNanos) + " games/s");
+    }
+
+    /**
+     * Play one game, with its tie breaks seeded by its number
+     */
+    private GameRecord playGame(long game, TranspositionTable table, Random random) {
+        // the deeper entries of earlier games would change the moves of a depth limited search,
+        // the exact scores of a complete search are the same whichever game stored them
+        if (table != null && mConfig.maxDepth >= 0) {
+            table.clear();
+        }
+        random.setSeed(mSeed ^ (game * 0x9E3779B97F4A7C15L));
+        TicTacToeGame ticTacToeGame = new TicTacToeGame(new int[mBoardSize][mBoardSize]);
+        // neither player is the computer, which would start a search of its own on every move
+        ticTacToeGame.setPlayerHuman(1, true);
+        ticTacToeGame.setPlayerHuman(2, true);
+        ticTacToeGame.resetGame(1 + (int) (game % 2));
+        while (ticTacToeGame.getState() == TicTacToeGame.State.SET_UP
+                || ticTacToeGame.getState() == TicTacToeGame.State.IN_PROGRESS) {
+            GameAi.MoveInterface move = GameAi.getBestMove(ticTacToeGame, mConfig, table, null, random, null, null);
+            if (move == null || !ticTacToeGame.makeMove((TicTacToeGame.Move) move)) {
+                throw new IllegalStateException("The GameAi found no valid move in game " + game);
+            }
+        }
+        return ticTacToeGame.toRecord();
+    }
+
+    /**
+     * Compress a batch of games into a GZIP member and append it to the output
+     */
+    private void write(StringBuilder batch, OutputStream out) throws IOException {
+        ByteArrayOutputStream member = new ByteArrayOutputStream(batch.length() / 4);
+        GZIPOutputStream gzip = new GZIPOutputStream(member);
+        gzip.write(batch.toString().getBytes("UTF-8"));
+        gzip.close();
+        synchronized (out) {
+            member.writeTo(out);
+        }
+    }
+
+    private final class Worker implements Runnable {
+        final long gameCount;
+        final OutputStream out;
+        final TranspositionTable table = mTableBytes > 0 ? new TranspositionTable(mTableBytes) : null;
+        final Random random = new Random();
+        final long[] results = new long[TicTacToeGame.State.values().length];
+
+        Worker(long gameCount, OutputStream out) {
+            this.gameCount = gameCount;
+            this.out = out;
+        }
+
+        @Override
+        public void run() {
+            StringBuilder batch = new StringBuilder(BATCH_CHARS + 1024);
+            try {
+                long game;
+                while (mFailure == null && (game = mNextGame.getAndIncrement()) < gameCount) {
+                    GameRecord record = playGame(game, table, random);
+                    results[record.getResult().ordinal()]++;
+                    batch.append(record.toString()).append('\n');
+                    if (batch.length() >= BATCH_CHARS) {
+                        write(batch, out);
+                        batch.setLength(0);
+                    }
+                    mFinishedGames.incrementAndGet();
+                }
+                if (batch.length() > 0) {
+                    write(batch, out);
+                }
+            } catch (IOException e) {
+                Log.e(TAG, "Failed to write the games", e);
+                mFailure = e;
+            } catch (RuntimeException e) {
+                Log.e(TAG, "Failed to play a game", e);
+                mFailure = e;
+            }
+        }
+    }
+
+    /**
+     * The outcome of a run of games
+     */
+    public static final class Result {
+        private final long elapsedNanos;
+        private final long[] results = new long[TicTacToeGame.State.values().length];
+
+        Result(long elapsedNanos) {
+            this.elapsedNanos = elapsedNanos;
+        }
+
+        void add(long[] workerResults) {
+            for (int idx = 0; idx < results.length; idx++) {
+                results[idx] += workerResults[idx];
+            }
+        }
+
+        public long getGameCount() {
+            long count = 0;
+            for (long games : results) {
+                count += games;
+            }
+            return count;
+        }
+
+        public long getWins(int player) {
+            return results[(player == 1 ? TicTacToeGame.State.PLAYER_1_WON : TicTacToeGame.State.PLAYER_2_WON).ordinal()];
+        }
+
+        public long getDraws() {
+            return results[TicTacToeGame.State.DRAW.ordinal()];
+        }
+
+        public long getElapsedNanos() {
+            return elapsedNanos;
+        }
+
+        public double getGamesPerSecond() {
+            return elapsedNanos > 0 ? getGameCount() * 1e9 / elapsedNanos : 0;
+        }
+    }
+
+    /**
+     * Run from the command line, see the selfPlay Gradle task
+     * <br><br>
+     * arguments: game count, output file, then optionally the board size (3), the number of
+     * threads (one per processor), the seed (0) and the maximum search depth (-1 for no limit)
+     */
+    public static void main(String[] args) throws Exception {
+        if (args.length < 2) {
+            System.err.println("usage: SelfPlay <games> <output.gz> [board size] [threads] [seed] [max depth]");
+            System.exit(1);
+        }
+        long gameCount = Long.parseLong(args[0]);
+        int boardSize = args.length > 2 ? Integer.parseInt(args[2]) : 3;
+        int threadCount = args.length > 3 ? Integer.parseInt(args[3]) : Runtime.getRuntime().availableProcessors();
+        long seed = args.length > 4 ? Long.parseLong(args[4]) : 0;
+        int maxDepth = args.length > 5 ? Integer.parseInt(args[5]) : -1;
+
+        // only report the progress, the engine would log every move
+        Log.setLogger(new Log.Logger() {
+            @Override
+            public void log(int priority, String tag, String msg, Throwable tr) {
+                if (TAG.equals(tag) || priority >= Log.ERROR) {
+                    System.out.println(msg);
+                    if (tr != null) {
+                        tr.printStackTrace();
+                    }
+                }
+            }
+        });
+        SelfPlay selfPlay = new SelfPlay(boardSize, SearchConfig.DEFAULT.withMaxDepth(maxDepth), threadCount,
+                GameAi.DEFAULT_TABLE_BYTES, seed);
+        OutputStream out = new BufferedOutputStream(new FileOutputStream(args[1]), 1 << 16);
+        try {
+            selfPlay.play(gameCount, out);
+        } finally {
+            out.close();
+        }
+    }
+}
@@ -0,0 +1,373 @@
+package com.iantmeyer.tic_tac_toe.game;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * The value of every position of small boards, solved by retrograde analysis, e.g. all 3^16 of
+ * the 4x4 board in a 10 MB file
+ * <br><br>
+ * A position is ranked in base 3 with a digit per square: 0 empty, 1 the player to move, 2 the
+ * opponent. Its value for the player to move, PerfectPlayTable.LOSS, DRAW or WIN, takes 2 bits at
+ * the rank, 0 for a position which can not be reached. The file is read through a read-only
+ * MappedByteBuffer, so a lookup is a memory read which costs no heap, and the pages are shared by
+ * every process using the file. Best moves are found by looking up the position after each move.
+ * <br><br>
+ * generate() solves the positions from the full board back to the empty board, each number of
+ * squares taken from the values of the positions with one more. The positions with the same
+ * number of squares do not depend on each other and are split across a ForkJoinPool.
+ * <br><br>
+ * file: int magic, short version, short board size, then the values packed 4 to a byte, lowest
+ * bits first
+ */
+public final class Tablebase {
+    private static final String TAG = "Tablebase";
+
+    private static final int MAGIC = 0x54545442;   // "TTTB"
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 8;
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    /**
+     * The largest board which can be solved, with 3^16 positions
+     */
+    public static final int MAX_SIZE = 4;
+
+    private static final int SPLIT_MASKS = 64;
+
+    private final int mSize;
+    private final MappedByteBuffer mValues;
+    private final int[] mPowers;
+    private final int[] mLines;
+
+    private Tablebase(int size, MappedByteBuffer values) {
+        mSize = size;
+        mValues = values;
+        mPowers = getPowers(size * size);
+        mLines = getLines(size);
+    }
+
+    /**
+     * Map a tablebase written by generate()
+     *
+     * @param file
+     * @return
+     * @throws IOException when the file can not be read or is not a complete tablebase
+     */
+    public static Tablebase open(File file) throws IOException {
+        RandomAccessFile in = new RandomAccessFile(file, "r");
+        try {
+            if (in.length() < HEADER_BYTES || in.readInt() != MAGIC || in.readShort() != VERSION) {
+                throw new IOException(file + " is not a tablebase");
+            }
+            int size = in.readShort();
+            if (size < 1 || size > MAX_SIZE || in.length() != getFileLength(size)) {
+                throw new IOException(file + " is not a complete tablebase");
+            }
+            MappedByteBuffer values = in.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, in.length());
+            Log.i(TAG, "Mapped the " + size + "x" + size + " tablebase " + file);
+            // the mapping stays valid once the file is closed
+            return new Tablebase(size, values);
+        } finally {
+            in.close();
+        }
+    }
+
+    public int getSize() {
+        return mSize;
+    }
+
+    /**
+     * The value of a position for the player to move
+     *
+     * @param ownBits      squares of the player to move, bit row * size + column
+     * @param opponentBits squares of the opponent
+     * @return PerfectPlayTable.LOSS, DRAW or WIN, or 0 when the position can not be reached
+     */
+    public int getValue(long ownBits, long opponentBits) {
+        int rank = 0;
+        for (int cell = 0; cell < mPowers.length; cell++) {
+            if ((ownBits & (1L << cell)) != 0) {
+                rank += mPowers[cell];
+            } else if ((opponentBits & (1L << cell)) != 0) {
+                rank += 2 * mPowers[cell];
+            }
+        }
+        return (mValues.get(HEADER_BYTES + (rank >> 2)) >> ((rank & 3) << 1)) & 3;
+    }
+
+    /**
+     * Every move keeping the value of a position
+     * <br><br>
+     * Only the value is stored, not how far away the end is, so a win is completed at once when
+     * possible, and a lost position blocks the opponent's immediate wins.
+     *
+     * @param ownBits      squares of the player to move
+     * @param opponentBits squares of the opponent
+     * @return bit row * size + column set for each best move, or 0 when the position can not be
+     * reached or is over
+     */
+    public int getBestMoves(long ownBits, long opponentBits) {
+        int value = getValue(ownBits, opponentBits);
+        int own = (int) ownBits;
+        int opponent = (int) opponentBits;
+        int empty = ((1 << mPowers.length) - 1) & ~(own | opponent);
+        if (value == 0 || hasLine(opponent)) {
+            return 0;
+        }
+        int bestMoves = 0;
+        int urgentMoves = 0;
+        for (int cells = empty; cells != 0; cells &= cells - 1) {
+            int move = cells & -cells;
+            if (value == PerfectPlayTable.WIN && hasLine(own | move)) {
+                urgentMoves |= move;
+            } else if (value == PerfectPlayTable.LOSS && hasLine(opponent | move)) {
+                urgentMoves |= move;
+            }
+            int valueAfter = getValue(opponent, own | move);
+            if (value == PerfectPlayTable.WIN && valueAfter == PerfectPlayTable.LOSS
+                    || value == PerfectPlayTable.DRAW && valueAfter == PerfectPlayTable.DRAW
+                    || value == PerfectPlayTable.LOSS) {
+                bestMoves |= move;
+            }
+        }
+        return urgentMoves != 0 ? urgentMoves : bestMoves;
+    }
+
+    private boolean hasLine(int bits) {
+        for (int line : mLines) {
+            if ((bits & line) == line) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Solve every position of a board and write the tablebase, to a temporary file renamed over
+     * the file when complete, or deleted when writing fails
+     *
+     * @param size        at most MAX_SIZE
+     * @param file
+     * @param parallelism the number of threads solving positions
+     * @throws IOException
+     */
+    public static void generate(int size, File file, int parallelism) throws IOException {
+        if (size < 1 || size > MAX_SIZE) {
+            throw new IllegalArgumentException("Can not solve a " + size + "x" + size + " board");
+        }
+        long startNanos = System.nanoTime();
+        byte[] values = new Solver(size).solve(parallelism);
+        Log.i(TAG, "Solved the " + size + "x" + size + " board in " + (System.nanoTime() - startNanos) / 1000000 + " ms");
+
+        File tempFile = new File(file.getPath() + TEMP_SUFFIX);
+        boolean renamed = false;
+        try {
+            FileOutputStream fileOut = new FileOutputStream(tempFile);
+            try {
+                DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fileOut, 1 << 16));
+                out.writeInt(MAGIC);
+                out.writeShort(VERSION);
+                out.writeShort(size);
+                for (int rank = 0; rank < values.length; rank += 4) {
+                    int packed = 0;
+                    for (int idx = 0; idx < 4 && rank + idx < values.length; idx++) {
+                        packed |= values[rank + idx] << (idx << 1);
+                    }
+                    out.write(packed);
+                }
+                out.flush();
+                fileOut.getFD().sync();
+            } finally {
+                fileOut.close();
+            }
+            if (!tempFile.renameTo(file)) {
+                throw new IOException("Failed to rename " + tempFile);
+            }
+            renamed = true;
+        } finally {
+            // never leave a partly written file behind
+            if (!renamed) {
+                tempFile.delete();
+            }
+        }
+    }
+
+    private static long getFileLength(int size) {
+        return HEADER_BYTES + (getPowers(size * size + 1)[size * size] + 3) / 4;
+    }
+
+    private static int[] getPowers(int count) {
+        int[] powers = new int[count];
+        powers[0] = 1;
+        for (int idx = 1; idx < count; idx++) {
+            powers[idx] = powers[idx - 1] * 3;
+        }
+        return powers;
+    }
+
+    /**
+     * The squares of every row, column and diagonal
+     */
+    private static int[] getLines(int size) {
+        int[] lines = new int[2 * size + 2];
+        for (int idx = 0; idx < size; idx++) {
+            for (int other = 0; other < size; other++) {
+                lines[idx] |= 1 << (idx * size + other);
+                lines[size + idx] |= 1 << (other * size + idx);
+            }
+            lines[2 * size] |= 1 << (idx * size + idx);
+            lines[2 * size + 1] |= 1 << (idx * size + size - 1 - idx);
+        }
+        return lines;
+    }
+
+    /**
+     * Solves every position of one board size, a value per byte while solving
+     */
+    private static final class Solver {
+        final int cells;
+        final byte[] values;
+        final int[] ranks;          // by the squares counting as digit 1
+        final boolean[] hasLine;    // by the squares of a player
+        final int[][] masksByCount;
+
+        Solver(int size) {
+            cells = size * size;
+            int[] powers = getPowers(cells + 1);
+            values = new byte[powers[cells]];
+            ranks = new int[1 << cells];
+            hasLine = new boolean[1 << cells];
+            int[] lines = getLines(size);
+            int[] counts = new int[cells + 1];
+            for (int bits = 0; bits < ranks.length; bits++) {
+                for (int cell = 0; cell < cells; cell++) {
+                    if ((bits & (1 << cell)) != 0) {
+                        ranks[bits] += powers[cell];
+                    }
+                }
+                for (int line : lines) {
+                    hasLine[bits] |= (bits & line) == line;
+                }
+                counts[Integer.bitCount(bits)]++;
+            }
+            masksByCount = new int[cells + 1][];
+            for (int count = 0; count <= cells; count++) {
+                masksByCount[count] = new int[counts[count]];
+                counts[count] = 0;
+            }
+            for (int bits = 0; bits < ranks.length; bits++) {
+                int count = Integer.bitCount(bits);
+                masksByCount[count][counts[count]++] = bits;
+            }
+        }
+
+        byte[] solve(int parallelism) {
+            ForkJoinPool pool = new ForkJoinPool(Math.max(1, parallelism));
+            try {
+                for (int squares = cells; squares >= 0; squares--) {
+                    // the player to move has the same number of squares as the opponent, or one fewer
+                    int ownCount = squares / 2;
+                    int[] ownMasks = masksByCount[ownCount];
+                    pool.invoke(new LayerTask(this, ownMasks, 0, ownMasks.length, squares - ownCount));
+                }
+            } finally {
+                pool.shutdown();
+            }
+            return values;
+        }
+
+        void solve(int own, int opponentCount) {
+            int free = ((1 << cells) - 1) & ~own;
+            // every subset of the free squares, including the empty one
+            int opponent = free;
+            while (true) {
+                if (Integer.bitCount(opponent) == opponentCount) {
+                    values[ranks[own] + 2 * ranks[opponent]] = (byte) solve(own, opponent, free & ~opponent);
+                }
+                if (opponent == 0) {
+                    break;
+                }
+                opponent = (opponent - 1) & free;
+            }
+        }
+
+        int solve(int own, int opponent, int empty) {
+            if (hasLine[opponent]) {
+                return PerfectPlayTable.LOSS;
+            } else if (hasLine[own]) {
+                // the game ended before the opponent's move
+                return 0;
+            } else if (empty == 0) {
+                return PerfectPlayTable.DRAW;
+            }
+            int value = PerfectPlayTable.LOSS;
+            for (int moves = empty; moves != 0; moves &= moves - 1) {
+                int ownAfter = own | (moves & -moves);
+                if (hasLine[ownAfter] || values[ranks[opponent] + 2 * ranks[ownAfter]] == PerfectPlayTable.LOSS) {
+                    return PerfectPlayTable.WIN;
+                } else if (values[ranks[opponent] + 2 * ranks[ownAfter]] == PerfectPlayTable.DRAW) {
+                    value = PerfectPlayTable.DRAW;
+                }
+            }
+            return value;
+        }
+    }
+
+    /**
+     * Solves the positions of a range of squares of the player to move, with a number of squares
+     * of the opponent
+     */
+    private static final class LayerTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final Solver solver;
+        private final int[] ownMasks;
+        private final int from;
+        private final int to;
+        private final int opponentCount;
+
+        LayerTask(Solver solver, int[] ownMasks, int from, int to, int opponentCount) {
+            this.solver = solver;
+            this.ownMasks = ownMasks;
+            this.from = from;
+            this.to = to;
+            this.opponentCount = opponentCount;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > SPLIT_MASKS) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new LayerTask(solver, ownMasks, from, middle, opponentCount),
+                        new LayerTask(solver, ownMasks, middle, to, opponentCount));
+                return;
+            }
+            for (int idx = from; idx < to; idx++) {
+                solver.solve(ownMasks[idx], opponentCount);
+            }
+        }
+    }
+
+    /**
+     * Run from the command line, see the generateTablebase Gradle task
+     * <br><br>
+     * arguments: output file, then optionally the board size (4)
+     */
+    public static void main(String[] args) throws Exception {
+        if (args.length < 1) {
+            System.err.println("usage: Tablebase <output file> [board size]");
+            System.exit(1);
+        }
+        int size = args.length > 1 ? Integer.parseInt(args[1]) : MAX_SIZE;
+        generate(size, new File(args[0]), Runtime.getRuntime().availableProcessors());
+    }
+}
@@ -0,0 +1,757 @@
+package com.iantmeyer.tic_tac_toe.game;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * A game of Tic-Tac-Toe implementing an algorithm for a computer player
+ */
+public class TicTacToeGame implements GameAi.GameAiInterface {
+
+    private static final String TAG = "TicTacToeGame";
+
+    private BitBoard mBoard;
+    private int mNextPlayer = 1;
+    private State mState = State.SET_UP;
+    private GameAi.Strategy mAiStrategy = GameAi.Strategy.MINIMAX;
+
+    private final long mGameId;
+    private int mGeneration;
+    private SearchHandle mAiSearch;
+    private SearchHandle mPonderSearch;
+
+    private boolean[] mPlayerHuman = new boolean[2];
+    private MoveJournal mJournal;
+    private GameHistoryStore mHistory;
+
+    // the moves of the game, null for a search copy, incomplete when started from a set board
+    private int[] mMoves;
+    private int mMoveCount;
+    private int mFirstPlayer = 1;
+    private boolean mMovesComplete;
+
+    // squares taken by makeSearchMove(), most recent last
+    private int[] mSearchMoves;
+    private int mSearchMoveCount;
+
+    /**
+     * The state of the tic-tac-toe game
+     */
+    public enum State {
+        PLAYER_1_WON,
+        PLAYER_2_WON,
+        DRAW,
+        SET_UP,
+        IN_PROGRESS
+    }
+
+    /**
+     * Game of Tic-tac game
+     */
+    public TicTacToeGame(int[][] board) {
+        Log.i(TAG, "Creating game");
+        mGameId = GameAi.newGameId();
+        setBoard(board);
+    }
+
+    /**
+     * Restore a game from a snapshot
+     * <br><br>
+     * No GameAi move is started, even if a computer player is next, see resume().
+     *
+     * @param snapshot
+     * @return
+     * @throws IllegalArgumentException when the board size is not supported, see BitBoard.MAX_SIZE
+     */
+    public static TicTacToeGame restore(GameSnapshot snapshot) {
+        if (!BitBoard.isSupportedSize(snapshot.getSize())) {
+            throw new IllegalArgumentException("Can not restore a " + snapshot.getSize() + "x"
+                    + snapshot.getSize() + " board");
+        }
+        TicTacToeGame game = new TicTacToeGame(snapshot.getBoard());
+        game.mState = snapshot.getState();
+        game.mNextPlayer = snapshot.getNextPlayer();
+        game.mPlayerHuman[0] = snapshot.isPlayerHuman(1);
+        game.mPlayerHuman[1] = snapshot.isPlayerHuman(2);
+        return game;
+    }
+
+    private TicTacToeGame(long gameId, BitBoard board, Move move) {
+        mGameId = gameId;
+        mBoard = new BitBoard(board);
+        if (move != null) {
+            mBoard.set(mBoard.getCell(move.row, move.column), move.getPlayer());
+            mNextPlayer = getPlayerAfter(move.getPlayer());
+        }
+    }
+
+    /**
+     * A detached copy of a game for the AI to search on
+     */
+    private TicTacToeGame(TicTacToeGame game) {
+        mGameId = game.mGameId;
+        mGeneration = game.mGeneration;
+        mBoard = new BitBoard(game.mBoard);
+        mNextPlayer = game.mNextPlayer;
+        mState = game.mState;
+        mAiStrategy = game.mAiStrategy;
+        mSearchMoves = new int[mBoard.getCellCount()];
+    }
+
+    /**
+     * Clear the board and reset the game.
+     * <br><br>
+     * If the computer is set to move first, then a GameAi move will be initiated.
+     * A move still being searched for the previous game is cancelled.
+     *
+     * @param firstPlayer the player who will have the first turn
+     */
+    public void resetGame(int firstPlayer) {
+        Log.i(TAG, "Game reset");
+        cancelAiMove();
+        mGeneration++;
+        if (mState == State.IN_PROGRESS) {
+            // keep the abandoned game
+            recordGame();
+        }
+        mState = State.SET_UP;
+        mBoard = new BitBoard(mBoard.getSize());
+        resetMoves();
+        if (0 < firstPlayer && firstPlayer <= 2) {
+            Log.i(TAG, "Setting first player as " + firstPlayer);
+            mNextPlayer = firstPlayer;
+        } else {
+            Log.e(TAG, "Tic-tac-toe has two players. The player number must be either 1 or two: " + firstPlayer + " is invalid");
+        }
+        if (mJournal != null) {
+            // the empty board is smaller than the moves it replaces
+            mJournal.checkpoint(GameSnapshot.of(this));
+        }
+
+        Events.post(new ResetGameEvent());
+
+        if (!isPlayerHuman(mNextPlayer)) {
+            Log.i(TAG, "The first player is a computer player and will make the first move.");
+            startAiMove();
+        } else {
+            startPondering();
+        }
+    }
+
+    /**
+     * Record every change to the game in a journal, from a checkpoint of the game as it is now
+     *
+     * @param journal the journal, or null to stop recording
+     */
+    public void setJournal(MoveJournal journal) {
+        mJournal = journal;
+        if (journal != null) {
+            journal.checkpoint(GameSnapshot.of(this));
+        }
+    }
+
+    /**
+     * Keep every game played from an empty board in a history store, when it ends or is reset
+     *
+     * @param history the store, or null to stop keeping games
+     */
+    public void setHistoryStore(GameHistoryStore history) {
+        mHistory = history;
+    }
+
+    /**
+     * Continue a restored game
+     * <br><br>
+     * If the computer has the next move, then a GameAi move will be initiated.
+     */
+    public void resume() {
+        if (mState != State.SET_UP && mState != State.IN_PROGRESS) {
+            return;
+        }
+        if (!isPlayerHuman(mNextPlayer)) {
+            startAiMove();
+        } else {
+            startPondering();
+        }
+    }
+
+    /**
+     * Event posted when the Tic-Tac-Toe game is reset
+     */
+    public static class ResetGameEvent {
+    }
+
+    /**
+     * The size of the game board
+     *
+     * @return
+     */
+    public int getBoardSize() {
+        return mBoard.getSize();
+    }
+
+    /**
+     * The State of the game
+     *
+     * @return
+     */
+    public State getState() {
+        return mState;
+    }
+
+    /**
+     * TODO IM
+     *
+     * @param row
+     * @param column
+     * @return
+     */
+    public int getPlayerAtPosition(int row, int column) {
+        if (row < 0 || row >= mBoard.getSize() || column < 0 || column >= mBoard.getSize()) {
+            return 0;
+        }
+        return mBoard.getPlayerAt(mBoard.getCell(row, column));
+    }
+
+    /**
+     * Perform a move in the game.
+     * <br>
+     * If the following player is a computer, their move will be triggered.
+     *
+     * @param move
+     * @return
+     */
+    public boolean makeMove(Move move) {
+        if (!isAllowedMove(move)) {
+            return false;
+        }
+        Log.i(TAG, "Making move ( " + move.row + ", " + move.column + " ) for player " + move.getPlayer());
+        applyMove(move);
+        if (mJournal != null) {
+            mJournal.appendMove(mBoard.getCell(move.row, move.column), move.getPlayer());
+        }
+
+        if (mState != State.IN_PROGRESS) {
+            recordGame();
+        }
+
+        Events.post(new GameMoveEvent(move));
+
+        boolean pondered = mPonderSearch != null;
+        stopPondering();
+        if (mState.equals(State.IN_PROGRESS) && !isPlayerHuman(mNextPlayer)) {
+            startAiMove(pondered ? move : null);
+        } else if (mState.equals(State.IN_PROGRESS)) {
+            startPondering();
+        }
+
+        return true;
+    }
+
+    /**
+     * Redo a journaled move, without posting events or starting the GameAi
+     *
+     * @return false when the move is not allowed, i.e. the journal does not match the game
+     */
+    boolean replayMove(int cell, int player) {
+        if (cell >= mBoard.getCellCount()) {
+            return false;
+        }
+        Move move = new Move(player, mBoard.getRow(cell), mBoard.getColumn(cell));
+        if (!isAllowedMove(move)) {
+            return false;
+        }
+        applyMove(move);
+        return true;
+    }
+
+    /**
+     * Redo a journaled change of player type, without starting the GameAi
+     */
+    void replayPlayerHuman(int player, boolean human) {
+        mPlayerHuman[player - 1] = human;
+    }
+
+    private boolean isAllowedMove(Move move) {
+        if (mState != State.SET_UP && mState != State.IN_PROGRESS) {
+            return false;
+        }
+        if (!isValidMove(move)) {
+            return false;
+        }
+        if (mNextPlayer != 0 && mNextPlayer != move.getPlayer()) {
+            return false;
+        }
+        return true;
+    }
+
+    private void applyMove(Move move) {
+        if (isWinningMove(move)) {
+            if (move.getPlayer() == 1) {
+                mState = State.PLAYER_1_WON;
+                Log.i(TAG, "Move creates a win for player: 1");
+            } else {
+                mState = State.PLAYER_2_WON;
+                Log.i(TAG, "Move creates a win for player: 2");
+            }
+        } else if (isDrawMove(move)) {
+            Log.i(TAG, "Move creates a draw!");
+            mState = State.DRAW;
+        }
+        if (mState == State.SET_UP) {
+            mState = State.IN_PROGRESS;
+        }
+
+        int cell = mBoard.getCell(move.row, move.column);
+        mBoard.set(cell, move.getPlayer());
+        mNextPlayer = getPlayerAfter(move.getPlayer());
+        mGeneration++;
+        if (mMoves != null) {
+            if (mMoveCount == 0) {
+                mFirstPlayer = move.getPlayer();
+            }
+            mMoves[mMoveCount++] = cell;
+        }
+    }
+
+    // start the moves of a game on the current board
+    private void resetMoves() {
+        mMoves = new int[mBoard.getCellCount()];
+        mMoveCount = 0;
+        mMovesComplete = mBoard.getEmptyCount() == mBoard.getCellCount();
+    }
+
+    /**
+     * Add the game to the history store, if it was played from an empty board
+     */
+    private void recordGame() {
+        if (mHistory != null) {
+            GameRecord record = toRecord();
+            if (record != null) {
+                mHistory.add(record);
+            }
+        }
+    }
+
+    /**
+     * The moves of the game so far with its state
+     *
+     * @return the record, or null when the game was not played from an empty board or has no moves
+     */
+    GameRecord toRecord() {
+        if (!mMovesComplete || mMoveCount == 0) {
+            return null;
+        }
+        return new GameRecord(mBoard.getSize(), mFirstPlayer, mState, Arrays.copyOf(mMoves, mMoveCount));
+    }
+
+    /**
+     * Set whether or not a player is human
+     *
+     * @param player
+     * @param human
+     */
+    public void setPlayerHuman(int player, boolean human) {
+        if (0 <= player && player <= 2) {
+            Log.i(TAG, "Setting player " + player + " human = " + human);
+            mPlayerHuman[player - 1] = human;
+            if (mJournal != null) {
+                mJournal.appendPlayerHuman(player, human);
+            }
+        }
+        if(!human && player == mNextPlayer) {
+            stopPondering();
+            startAiMove();
+        }
+    }
+
+    /**
+     * Start the GameAi searching for the next move, unless it already is
+     */
+    private void startAiMove() {
+        startAiMove(null);
+    }
+
+    /**
+     * @param lastMove the human move just made, which the GameAi pondered, or null
+     */
+    private void startAiMove(Move lastMove) {
+        if (mAiSearch != null && !mAiSearch.isDone()) {
+            Log.i(TAG, "The GameAi is already calculating a move");
+            return;
+        }
+        mAiSearch = lastMove != null ? GameAi.makeAiMove(this, lastMove) : GameAi.makeAiMove(this);
+    }
+
+    /**
+     * Let the GameAi search while a human decides on a move against a computer player, when
+     * GameAi pondering is enabled
+     */
+    private void startPondering() {
+        if (GameAi.isPondering() && isPlayerHuman(mNextPlayer) && !isPlayerHuman(getPlayerAfter(mNextPlayer))) {
+            mPonderSearch = GameAi.ponder(this);
+        }
+    }
+
+    private void stopPondering() {
+        if (mPonderSearch != null) {
+            mPonderSearch.cancel();
+            mPonderSearch = null;
+        }
+    }
+
+    /**
+     * Stop the GameAi move being searched or pondered, if any
+     */
+    public void cancelAiMove() {
+        stopPondering();
+        if (mAiSearch != null) {
+            mAiSearch.cancel();
+            mAiSearch = null;
+        }
+    }
+
+    /**
+     * Whether or not a specific player is human
+     *
+     * @param player
+     */
+    public boolean isPlayerHuman(int player) {
+        if (0 < player && player <= 2) {
+            return mPlayerHuman[player - 1];
+        } else {
+            Log.e(TAG, "Tic-tac-toe can only have two players!");
+        }
+        return true;
+    }
+
+    /**
+     * A copy of the board of the game as an array
+     * <br>
+     * 0 => empty square
+     * <br>
+     * 1, 2 => the player controlling a square
+     */
+    public int[][] getBoard() {
+        return mBoard.toArray();
+    }
+
+    /**
+     * The packed board of the game
+     * <br><br>
+     * Modifying the returned board bypasses the game rules, copy it first
+     */
+    public BitBoard getBitBoard() {
+        return mBoard;
+    }
+
+    /**
+     * The board state of the game
+     */
+    public void setState(State state) {
+        mState = state;
+    }
+
+    /**
+     * The player who has the next move
+     *
+     * @return 1 or 2
+     */
+    @Override
+    public int getNextPlayer() {
+        return mNextPlayer;
+    }
+
+    @Override
+    public GameAi.GameAiInterface createGameAfterMove(GameAi.MoveInterface move) {
+        return new TicTacToeGame(mGameId, mBoard, (Move) move);
+    }
+
+    @Override
+    public GameAi.GameAiInterface createSearchCopy() {
+        return new TicTacToeGame(this);
+    }
+
+    @Override
+    public void makeSearchMove(int cell) {
+        mBoard.set(cell, mNextPlayer);
+        mSearchMoves[mSearchMoveCount++] = cell;
+        mNextPlayer = getPlayerAfter(mNextPlayer);
+    }
+
+    @Override
+    public void unmakeSearchMove() {
+        int cell = mSearchMoves[--mSearchMoveCount];
+        mNextPlayer = mBoard.getPlayerAt(cell);
+        mBoard.clear(cell);
+    }
+
+    @Override
+    public ArrayList<GameAi.MoveInterface> getAvailableMoves() {
+        long emptyBits = mBoard.getEmptyBits();
+        ArrayList<GameAi.MoveInterface> availableMoves = new ArrayList<>(Long.bitCount(emptyBits));
+        while (emptyBits != 0) {
+            int cell = Long.numberOfTrailingZeros(emptyBits);
+            emptyBits &= emptyBits - 1;
+            availableMoves.add(new Move(mNextPlayer, mBoard.getRow(cell), mBoard.getColumn(cell)));
+        }
+        return availableMoves;
+    }
+
+    @Override
+    public int getMaxMoveCount() {
+        return mBoard.getCellCount();
+    }
+
+    @Override
+    public int getAvailableMoves(int[] cells) {
+        long emptyBits = mBoard.getEmptyBits();
+        int count = 0;
+        while (emptyBits != 0) {
+            cells[count++] = Long.numberOfTrailingZeros(emptyBits);
+            emptyBits &= emptyBits - 1;
+        }
+        return count;
+    }
+
+    @Override
+    public boolean isWinningMove(int cell) {
+        return mBoard.isWinningMove(cell, mNextPlayer);
+    }
+
+    @Override
+    public boolean isDrawMove(int cell) {
+        return mBoard.isDrawMove(cell, mNextPlayer);
+    }
+
+    /**
+     * The cell of the move, see BitBoard.getCell()
+     */
+    @Override
+    public int encodeMove(GameAi.MoveInterface move) {
+        return mBoard.getCell(((Move) move).row, ((Move) move).column);
+    }
+
+    @Override
+    public GameAi.MoveInterface decodeMove(int cell) {
+        return new Move(mNextPlayer, mBoard.getRow(cell), mBoard.getColumn(cell));
+    }
+
+    @Override
+    public double getGameValue(int player) {
+        return mBoard.getEvaluation(player);
+    }
+
+    @Override
+    public int getMovePriority(int cell) {
+        return mBoard.getLineCount(cell);
+    }
+
+    /**
+     * Set how the GameAi finds moves for this game
+     *
+     * @param strategy
+     */
+    public void setAiStrategy(GameAi.Strategy strategy) {
+        mAiStrategy = strategy;
+    }
+
+    @Override
+    public GameAi.Strategy getAiStrategy() {
+        return mAiStrategy;
+    }
+
+    @Override
+    public long getGameId() {
+        return mGameId;
+    }
+
+    @Override
+    public int getGeneration() {
+        return mGeneration;
+    }
+
+    /**
+     * The canonical hash of the board, so rotated and reflected positions share search results
+     */
+    @Override
+    public long getPositionHash() {
+        long hash = mBoard.getCanonicalHash();
+        return mNextPlayer == 2 ? hash ^ Zobrist.PLAYER_2_TO_MOVE : hash;
+    }
+
+    /**
+     * A perfect move from the PerfectPlayTable for 3x3 games, or from the GameAi's Tablebase for
+     * games of its size
+     */
+    @Override
+    public GameAi.MoveInterface getSolvedMove(Random random) {
+        long ownBits = mBoard.getPlayerBits(mNextPlayer);
+        long opponentBits = mBoard.getPlayerBits(getPlayerAfter(mNextPlayer));
+        int bestMoves = 0;
+        if (mBoard.getSize() == PerfectPlayTable.SIZE) {
+            int entry = PerfectPlayTable.lookup(ownBits, opponentBits);
+            if (entry != 0) {
+                bestMoves = PerfectPlayTable.getBestMoves(entry);
+            }
+        }
+        Tablebase tablebase = GameAi.getTablebase();
+        if (bestMoves == 0 && tablebase != null && tablebase.getSize() == mBoard.getSize()) {
+            bestMoves = tablebase.getBestMoves(ownBits, opponentBits);
+        }
+        if (bestMoves == 0) {
+            return null;
+        }
+        for (int skip = random.nextInt(Integer.bitCount(bestMoves)); skip > 0; skip--) {
+            bestMoves &= bestMoves - 1;
+        }
+        int cell = Integer.numberOfTrailingZeros(bestMoves);
+        return new Move(mNextPlayer, mBoard.getRow(cell), mBoard.getColumn(cell));
+    }
+
+    @Override
+    public boolean isWinningMove(GameAi.MoveInterface testMove) {
+        if (!isValidMove(testMove)) {
+            return false;
+        }
+
+        Move move = (Move) testMove;
+        return mBoard.isWinningMove(mBoard.getCell(move.row, move.column), move.getPlayer());
+    }
+
+    @Override
+    public boolean isDrawMove(GameAi.MoveInterface testMove) {
+        if (!isValidMove(testMove)) {
+            return false;
+        }
+
+        Move move = (Move) testMove;
+        return mBoard.isDrawMove(mBoard.getCell(move.row, move.column), move.getPlayer());
+    }
+
+    private boolean validBoard(int[][] board) {
+        if (board == null || !BitBoard.isSupportedSize(board.length)) {
+            return false;
+        }
+        for (int rowIdx = 0; rowIdx < board.length; rowIdx++) {
+            if (board[rowIdx] == null || board[rowIdx].length != board.length) {
+                return false;
+            }
+            for (int colIdx = 0; colIdx < board.length; colIdx++) {
+                int value = board[rowIdx][colIdx];
+                if (value < 0 || value > 2) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private void setBoard(int[][] board) {
+        mGeneration++;
+        if (validBoard(board)) {
+            mBoard = BitBoard.fromArray(board);
+        } else {
+            Log.e(TAG, "Invalid board");
+            mBoard = new BitBoard(3);
+        }
+        resetMoves();
+    }
+
+    private int getPlayerAfter(int player) {
+        return (player == 1 ? 2 : 1);
+    }
+
+    private boolean isValidMove(GameAi.MoveInterface testMove) {
+        Move move = (Move) testMove;
+        if ((move.row < 0) || (move.row > (mBoard.getSize() - 1))
+                || (move.column < 0) || (move.column > (mBoard.getSize() - 1))
+                || (!mBoard.isEmpty(mBoard.getCell(move.row, move.column)))
+                || (!mState.equals(State.IN_PROGRESS) && !mState.equals(State.SET_UP))) {
+            return false;
+        }
+        return true;
+    }
+
+    public static class Move implements GameAi.MoveInterface {
+        private final int mPlayer;
+        public final int row;
+        public final int column;
+
+        /**
+         * One move in a tic-tac-toe game
+         *
+         * @param player
+         * @param row
+         * @param column
+         */
+        public Move(int player, int row, int column) {
+            mPlayer = player;
+            this.row = row;
+            this.column = column;
+        }
+
+        @Override
+        public int getPlayer() {
+            return mPlayer;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (!(other instanceof Move)) {
+                return false;
+            }
+            Move move = (Move) other;
+            return mPlayer == move.mPlayer && row == move.row && column == move.column;
+        }
+
+        @Override
+        public int hashCode() {
+            return (mPlayer * 31 + row) * 31 + column;
+        }
+    }
+
+    /**
+     * Event posted for a move having been made in the game
+     */
+    public static class GameMoveEvent {
+        public final TicTacToeGame.Move move;
+
+        public GameMoveEvent(Move move) {
+            this.move = move;
+        }
+    }
+
+    /**
+     * Event posted when the GameAi failed to find the computer player's move
+     * <br><br>
+     * The game waits on the computer player's turn, resume() searches again.
+     */
+    public static class AiFailedEvent {
+    }
+
+    /**
+     * When the GameAi finishes it's search, the move is made unless the game has changed since
+     *
+     * @param aiFinishEvent
+     */
+    @Override
+    public void onAiFinishEvent(GameAi.AiFinishEvent aiFinishEvent) {
+        if (aiFinishEvent.gameId != mGameId || aiFinishEvent.generation != mGeneration) {
+            Log.i(TAG, "Dropped a GameAi move for an earlier state of the game");
+            return;
+        }
+        if (aiFinishEvent.move == null) {
+            Log.e(TAG, "The GameAi failed to find a move for player " + mNextPlayer);
+            Events.post(new AiFailedEvent());
+        } else if (aiFinishEvent.move instanceof TicTacToeGame.Move) {
+            TicTacToeGame.Move move = (TicTacToeGame.Move) aiFinishEvent.move;
+            if (move.getPlayer() == this.getNextPlayer()) {
+                this.makeMove(move);
+            } else {
+                Log.e(TAG, "The GameAi is attempting to move the wrong player!");
+            }
+        }
+    }
+}
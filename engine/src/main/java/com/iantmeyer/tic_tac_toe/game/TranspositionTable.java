@@ -0,0 +1,127 @@
+package com.iantmeyer.tic_tac_toe.game;
+
+/**
+ * A fixed-size hash table of searched positions, keyed by GameAiInterface.getPositionHash()
+ * <br><br>
+ * Each entry holds the score of a position, whether that score is exact or only a bound, and the
+ * draft (remaining search depth) it was searched with. Entries live in two parallel long arrays,
+ * 16 bytes per entry, so the table never allocates after construction.
+ * <br><br>
+ * Replacement policy: a slot is overwritten when it holds the same position, when it was written
+ * during an earlier search, or when the new entry has a draft at least as deep as the stored one.
+ * Otherwise the deeper, current entry is kept.
+ * <br><br>
+ * The table may be shared by several search threads without locking. Each key is stored XOR-ed
+ * with its data, so an entry torn by concurrent writes fails the key check and reads as a miss.
+ */
+public final class TranspositionTable {
+
+    public static final int BOUND_EXACT = 1;
+    public static final int BOUND_LOWER = 2;
+    public static final int BOUND_UPPER = 3;
+
+    /**
+     * The draft of a search without a depth limit, deeper than any limited search
+     */
+    public static final int UNLIMITED_DRAFT = 0xFF;
+
+    static final int BYTES_PER_ENTRY = 16;
+
+    private final long[] mKeys;
+    private final long[] mData;
+    private final int mMask;
+    private volatile int mGeneration;
+
+    /**
+     * Create a table using at most maxBytes of memory
+     *
+     * @param maxBytes memory cap, rounded down to a power of two number of entries
+     */
+    public TranspositionTable(long maxBytes) {
+        long maxEntries = Math.max(1, maxBytes / BYTES_PER_ENTRY);
+        int entries = Integer.highestOneBit((int) Math.min(maxEntries, 1 << 30));
+        mKeys = new long[entries];
+        mData = new long[entries];
+        mMask = entries - 1;
+    }
+
+    /**
+     * The number of entries in the table
+     *
+     * @return
+     */
+    public int getCapacity() {
+        return mKeys.length;
+    }
+
+    /**
+     * Start a new search: entries of earlier searches become the first to be replaced
+     */
+    public void newSearch() {
+        mGeneration = (mGeneration + 1) & 0xFF;
+    }
+
+    /**
+     * Remove every entry
+     */
+    public void clear() {
+        for (int idx = 0; idx < mKeys.length; idx++) {
+            mKeys[idx] = 0;
+            mData[idx] = 0;
+        }
+    }
+
+    /**
+     * Look up a position
+     *
+     * @param hash
+     * @param minDraft the minimum draft of a usable entry
+     * @return the packed entry, or 0 when there is no usable entry
+     */
+    public long probe(long hash, int minDraft) {
+        int idx = (int) hash & mMask;
+        long data = mData[idx];
+        if (data != 0 && (mKeys[idx] ^ data) == hash && getDraft(data) >= minDraft) {
+            return data;
+        }
+        return 0;
+    }
+
+    /**
+     * Store a searched position, subject to the replacement policy
+     *
+     * @param hash
+     * @param score
+     * @param bound BOUND_EXACT, BOUND_LOWER or BOUND_UPPER
+     * @param draft
+     */
+    public void store(long hash, int score, int bound, int draft) {
+        int idx = (int) hash & mMask;
+        long stored = mData[idx];
+        int generation = mGeneration;
+        if (stored == 0
+                || (mKeys[idx] ^ stored) == hash
+                || getGeneration(stored) != generation
+                || draft >= getDraft(stored)) {
+            long data = ((long) score << 32) | (generation << 16) | (draft << 8) | bound;
+            mKeys[idx] = hash ^ data;
+            mData[idx] = data;
+        }
+    }
+
+    public static int getScore(long data) {
+        return (int) (data >> 32);
+    }
+
+    public static int getBound(long data) {
+        return (int) data & 0xFF;
+    }
+
+    public static int getDraft(long data) {
+        return (int) (data >>> 8) & 0xFF;
+    }
+
+    private static int getGeneration(long data) {
+        return (int) (data >>> 16) & 0xFF;
+    }
+}
@@ -0,0 +1,70 @@
+package com.iantmeyer.tic_tac_toe.game;
+
+/**
+ * Fixed random keys for Zobrist hashing of BitBoard and MnkGame positions.
+ * <br><br>
+ * A position hash is the XOR of the key of its board size with the key of every occupied square,
+ * so it can be updated incrementally by XOR-ing a single key in or out for each move.
+ */
+final class Zobrist {
+
+    private static final long SEED = 0x5DEECE66DL;
+
+    private static final long[] PLAYER_1_KEYS = new long[BitBoard.MAX_SIZE * BitBoard.MAX_SIZE];
+    private static final long[] PLAYER_2_KEYS = new long[BitBoard.MAX_SIZE * BitBoard.MAX_SIZE];
+    private static final long[] SIZE_KEYS = new long[BitBoard.MAX_SIZE + 1];
+
+    /**
+     * XOR-ed into the hash when player 2 is the next to move
+     */
+    static final long PLAYER_2_TO_MOVE;
+
+    static {
+        long state = SEED;
+        for (int cell = 0; cell < PLAYER_1_KEYS.length; cell++) {
+            PLAYER_1_KEYS[cell] = mix(state += 0x9E3779B97F4A7C15L);
+            PLAYER_2_KEYS[cell] = mix(state += 0x9E3779B97F4A7C15L);
+        }
+        for (int size = 0; size < SIZE_KEYS.length; size++) {
+            SIZE_KEYS[size] = mix(state += 0x9E3779B97F4A7C15L);
+        }
+        PLAYER_2_TO_MOVE = mix(state + 0x9E3779B97F4A7C15L);
+    }
+
+    private Zobrist() {
+        // discourage instantiation
+    }
+
+    static long getSquareKey(int cell, int player) {
+        return player == 1 ? PLAYER_1_KEYS[cell] : PLAYER_2_KEYS[cell];
+    }
+
+    static long getSizeKey(int size) {
+        return SIZE_KEYS[size];
+    }
+
+    /**
+     * A new set of keys, for games which do not fit on a BitBoard
+     *
+     * @param seed  games with different seeds get unrelated keys
+     * @param count
+     * @return
+     */
+    static long[] createKeys(long seed, int count) {
+        long[] keys = new long[count];
+        long state = mix(seed);
+        for (int idx = 0; idx < count; idx++) {
+            keys[idx] = mix(state += 0x9E3779B97F4A7C15L);
+        }
+        return keys;
+    }
+
+    /**
+     * SplitMix64 finalizer, spreads a counter into well distributed 64 bit keys
+     */
+    private static long mix(long value) {
+        value = (value ^ (value >>> 30)) * 0xBF58476D1CE4E5B9L;
+        value = (value ^ (value >>> 27)) * 0x94D049BB133111EBL;
+        return value ^ (value >>> 31);
+    }
+}
@@ -0,0 +1,116 @@
+package com.iantmeyer.tic_tac_toe.game;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.iantmeyer.tic_tac_toe.game.TicTacToeGame.Move;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class GameAiServiceTest {
+
+    private GameAiService mService;
+    private SearchHandle mBlocker;
+    private final List<Long> mFinishedGameIds = Collections.synchronizedList(new ArrayList<Long>());
+
+    @Before
+    public void setUp() throws Exception {
+        mService = new GameAiService(1, 3, 1 << 20, null);
+
+        // keep the only worker busy until the blocker is cancelled
+        MnkGame game = new MnkGame(15, 15, 5);
+        game.setAiStrategy(GameAi.Strategy.MONTE_CARLO);
+        mBlocker = mService.submit(game, SearchConfig.DEFAULT.withMonteCarloPlayouts(Integer.MAX_VALUE));
+        while (mService.getActiveSearches() == 0) {
+            Thread.sleep(1);
+        }
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        mBlocker.cancel();
+        mService.shutdown();
+    }
+
+    @Test
+    public void testRejectsWhenFull() throws Exception {
+        ArrayList<SearchHandle> handles = new ArrayList<>();
+        for (int idx = 0; idx < 3; idx++) {
+            handles.add(mService.submit(createGame(), SearchConfig.DEFAULT));
+            assertNotNull(handles.get(idx));
+        }
+        assertEquals(3, mService.getQueueDepth());
+        assertNull(mService.submit(createGame(), SearchConfig.DEFAULT));
+        assertEquals(1, mService.getRejectedCount());
+
+        mBlocker.cancel();
+        awaitFinishedGames(3);
+        while (mService.getCompletedCount() < 4) {
+            Thread.sleep(1);
+        }
+        assertEquals(0, mService.getQueueDepth());
+        assertEquals(4, mService.getQueueLatency().getCount());
+        assertTrue(mService.getQueueLatency().getPercentileMillis(0.5) > 0);
+    }
+
+    @Test
+    public void testGamesTakeTurns() throws Exception {
+        TicTacToeGame busyGame = createGame();
+        TicTacToeGame otherGame = createGame();
+        mService.submit(busyGame, SearchConfig.DEFAULT);
+        mService.submit(busyGame, SearchConfig.DEFAULT);
+        SearchHandle handle = mService.submit(otherGame, SearchConfig.DEFAULT);
+        assertNotNull(handle);
+
+        mBlocker.cancel();
+        awaitFinishedGames(2);
+        assertEquals(busyGame.getGameId(), (long) mFinishedGameIds.get(0));
+        assertEquals(otherGame.getGameId(), (long) mFinishedGameIds.get(1));
+    }
+
+    @Test
+    public void testNewGenerationCancelsQueuedSearch() throws Exception {
+        TicTacToeGame game = createGame();
+        SearchHandle staleHandle = mService.submit(game, SearchConfig.DEFAULT);
+        assertTrue(game.makeMove(new Move(1, 0, 0)));
+        SearchHandle handle = mService.submit(game, SearchConfig.DEFAULT);
+
+        assertTrue(staleHandle.isCancelled());
+        assertTrue(staleHandle.isDone());
+        assertEquals(1, mService.getQueueDepth());
+
+        mBlocker.cancel();
+        awaitFinishedGames(1);
+        assertTrue(handle.isDone());
+        assertEquals(2, game.getPlayerAtPosition(1, 1));
+    }
+
+    /**
+     * A game between humans, which records the moves delivered to it
+     */
+    private TicTacToeGame createGame() {
+        TicTacToeGame game = new TicTacToeGame(null) {
+            @Override
+            public void onAiFinishEvent(GameAi.AiFinishEvent aiFinishEvent) {
+                super.onAiFinishEvent(aiFinishEvent);
+                mFinishedGameIds.add(aiFinishEvent.gameId);
+            }
+        };
+        game.setPlayerHuman(1, true);
+        game.setPlayerHuman(2, true);
+        return game;
+    }
+
+    private void awaitFinishedGames(int count) throws Exception {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (mFinishedGameIds.size() < count) {
+            assertTrue(System.currentTimeMillis() < deadline);
+            Thread.sleep(1);
+        }
+    }
+}
@@ -0,0 +1,501 @@
+package com.iantmeyer.tic_tac_toe.game;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.iantmeyer.tic_tac_toe.game.TicTacToeGame.Move;
+
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class GameAiTest {
+
+    private TicTacToeGame mGame;
+
+    @Before
+    public void setUp() throws Exception {
+        GameAi.with(-1);
+        GameAi.withMoveOrdering(true);
+        GameAi.withTranspositionTableSize(1 << 20);
+        mGame = new TicTacToeGame(null);
+        mGame.setPlayerHuman(1, true);
+        mGame.setPlayerHuman(2, true);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        GameAi.withDefaultExecutors();
+        GameAi.withParallelism(Runtime.getRuntime().availableProcessors());
+        GameAi.withMonteCarloPlayouts(GameAi.DEFAULT_MONTE_CARLO_PLAYOUTS);
+    }
+
+    @Test
+    public void testEmptyBoardIsDraw() throws Exception {
+        mGame.resetGame(1);
+        assertEquals(GameAi.DRAW_SCORE, GameAi.getScore(mGame));
+
+        GameAi.withMoveOrdering(false);
+        assertEquals(GameAi.DRAW_SCORE, GameAi.getScore(mGame));
+    }
+
+    @Test
+    public void testTakesWin() throws Exception {
+        mGame.resetGame(1);
+        assertTrue(mGame.makeMove(new Move(1, 0, 0)));
+        assertTrue(mGame.makeMove(new Move(2, 1, 0)));
+        assertTrue(mGame.makeMove(new Move(1, 0, 1)));
+        assertTrue(mGame.makeMove(new Move(2, 1, 1)));
+
+        assertEquals(GameAi.WIN_SCORE, GameAi.getScore(mGame));
+        Move move = (Move) GameAi.getBestMove(mGame);
+        assertEquals(0, move.row);
+        assertEquals(2, move.column);
+    }
+
+    @Test
+    public void testBlocksLoss() throws Exception {
+        mGame.resetGame(1);
+        assertTrue(mGame.makeMove(new Move(1, 0, 0)));
+        assertTrue(mGame.makeMove(new Move(2, 1, 1)));
+        assertTrue(mGame.makeMove(new Move(1, 0, 1)));
+
+        assertEquals(GameAi.DRAW_SCORE, GameAi.getScore(mGame));
+        Move move = (Move) GameAi.getBestMove(mGame);
+        assertEquals(0, move.row);
+        assertEquals(2, move.column);
+    }
+
+    @Test
+    public void testForcedLoss() throws Exception {
+        mGame.resetGame(1);
+        assertTrue(mGame.makeMove(new Move(1, 0, 0)));
+        assertTrue(mGame.makeMove(new Move(2, 0, 1)));
+        assertTrue(mGame.makeMove(new Move(1, 1, 1)));
+        assertTrue(mGame.makeMove(new Move(2, 2, 2)));
+        assertTrue(mGame.makeMove(new Move(1, 1, 0)));
+
+        // player 1 threatens both (1, 2) and (2, 0), and wins on the second ply
+        int score = GameAi.getScore(mGame);
+        assertEquals(-(GameAi.WIN_SCORE - 1), score);
+        assertTrue(GameAi.isDecisiveScore(score));
+        assertEquals(2, GameAi.getPliesToEnd(score));
+    }
+
+    @Test
+    public void testPrefersFasterWin() throws Exception {
+        // every move wins for player 1, but only (0, 3) and (1, 3) win at once
+        int[][] board = new int[4][4];
+        board[0][0] = board[0][1] = board[0][2] = 1;
+        board[1][0] = board[1][1] = board[1][2] = 1;
+        board[2][0] = board[2][3] = board[3][1] = board[3][2] = 2;
+        TicTacToeGame game = new TicTacToeGame(board);
+
+        assertEquals(GameAi.WIN_SCORE, GameAi.getScore(game));
+        GameAi.withRandomSeed(1);
+        for (int idx = 0; idx < 10; idx++) {
+            Move move = (Move) GameAi.getBestMove(game);
+            assertTrue(game.isWinningMove(move));
+        }
+    }
+
+    @Test
+    public void testTranspositionTable() throws Exception {
+        mGame.resetGame(2);
+        assertTrue(mGame.makeMove(new Move(2, 1, 1)));
+
+        assertEquals(GameAi.DRAW_SCORE, GameAi.getScore(mGame));
+        assertTrue(GameAi.getTranspositionTableHitRate() > 0);
+
+        GameAi.withTranspositionTableSize(0);
+        assertEquals(GameAi.DRAW_SCORE, GameAi.getScore(mGame));
+        assertEquals(0, GameAi.getTranspositionTableHitRate(), 0);
+    }
+
+    @Test
+    public void testPerfectPlayTable() throws Exception {
+        int entry = PerfectPlayTable.lookup(0, 0);
+        assertEquals(PerfectPlayTable.DRAW, PerfectPlayTable.getValue(entry));
+        assertEquals(0x1FF, PerfectPlayTable.getBestMoves(entry));
+
+        mGame.resetGame(1);
+        assertTrue(mGame.makeMove(new Move(1, 0, 0)));
+        assertTrue(mGame.makeMove(new Move(2, 0, 1)));
+
+        // player 1 has a forced win
+        BitBoard board = mGame.getBitBoard();
+        entry = PerfectPlayTable.lookup(board.getPlayerBits(1), board.getPlayerBits(2));
+        assertEquals(PerfectPlayTable.WIN, PerfectPlayTable.getValue(entry));
+        Move move = (Move) mGame.getSolvedMove(new Random());
+        assertTrue((PerfectPlayTable.getBestMoves(entry) & (1 << board.getCell(move.row, move.column))) != 0);
+        int score = GameAi.getScore(mGame.createGameAfterMove(move));
+        assertTrue(GameAi.isDecisiveScore(score));
+        assertTrue(score < 0);
+    }
+
+    @Test
+    public void testTimeBudget() throws Exception {
+        TicTacToeGame game = new TicTacToeGame(new int[4][4]);
+        game.setPlayerHuman(1, true);
+        game.setPlayerHuman(2, true);
+        game.resetGame(1);
+
+        long start = System.currentTimeMillis();
+        Move move = (Move) GameAi.getBestMove(game, 100);
+        assertTrue(System.currentTimeMillis() - start < 1000);
+        assertEquals(0, game.getPlayerAtPosition(move.row, move.column));
+        assertTrue(game.makeMove(move));
+
+        // the win is found within the budget
+        int[][] board = new int[4][4];
+        board[0][0] = board[0][1] = board[0][2] = 1;
+        board[3][1] = board[3][2] = board[3][3] = 2;
+        game = new TicTacToeGame(board);
+        move = (Move) GameAi.getBestMove(game, 100);
+        assertEquals(0, move.row);
+        assertEquals(3, move.column);
+    }
+
+    @Test
+    public void testParallelSearch() throws Exception {
+        int[][] board = new int[4][4];
+        board[0][0] = board[0][1] = 1;
+        board[1][1] = board[2][2] = 2;
+        board[3][0] = 1;
+        board[1][0] = 2;
+        TicTacToeGame game = new TicTacToeGame(board);
+
+        GameAi.withParallelism(1);
+        int score = GameAi.getScore(game);
+        GameAi.withParallelism(4);
+        Move move = (Move) GameAi.getBestMove(game);
+        int moveScore;
+        if (game.isWinningMove(move)) {
+            moveScore = GameAi.WIN_SCORE;
+        } else if (game.isDrawMove(move)) {
+            moveScore = GameAi.DRAW_SCORE;
+        } else {
+            // a decisive score of the position after the move is one ply further from this one
+            int childScore = GameAi.getScore(game.createGameAfterMove(move));
+            moveScore = -childScore;
+            if (GameAi.isDecisiveScore(childScore)) {
+                moveScore += childScore > 0 ? 1 : -1;
+            }
+        }
+        assertEquals(score, moveScore);
+    }
+
+    @Test
+    public void testParallelSplitMatchesSequentialSearch() throws Exception {
+        // the children of the root moves are split too, which must not change the best moves
+        int[][] board = new int[5][5];
+        board[2][2] = board[1][3] = 1;
+        board[1][1] = 2;
+        GameAi.with(3);
+        for (int seed = 0; seed < 5; seed++) {
+            GameAi.withParallelism(1);
+            GameAi.clearTranspositionTable();
+            GameAi.withRandomSeed(seed);
+            Move move = (Move) GameAi.getBestMove(new TicTacToeGame(board));
+            GameAi.withParallelism(4);
+            GameAi.clearTranspositionTable();
+            GameAi.withRandomSeed(seed);
+            Move parallelMove = (Move) GameAi.getBestMove(new TicTacToeGame(board));
+            assertEquals(move.row, parallelMove.row);
+            assertEquals(move.column, parallelMove.column);
+        }
+    }
+
+    @Test
+    public void testDepthLimitedSearch() throws Exception {
+        // only the center of an odd board lies on four lines
+        TicTacToeGame game = new TicTacToeGame(new int[7][7]);
+        GameAi.with(2);
+        Move move = (Move) GameAi.getBestMove(game);
+        assertEquals(3, move.row);
+        assertEquals(3, move.column);
+    }
+
+    @Test
+    public void testMakeAiMove() throws Exception {
+        Executor directExecutor = new Executor() {
+            @Override
+            public void execute(Runnable runnable) {
+                runnable.run();
+            }
+        };
+        final ArrayList<Object> events = new ArrayList<>();
+        Events.setPoster(new Events.Poster() {
+            @Override
+            public void post(Object event) {
+                events.add(event);
+            }
+        });
+        GameAi.withExecutors(directExecutor, directExecutor);
+        try {
+            mGame.setPlayerHuman(2, false);
+            mGame.resetGame(1);
+            assertTrue(mGame.makeMove(new Move(1, 0, 0)));
+
+            // the only reply to a corner which does not lose is the center
+            assertEquals(2, mGame.getPlayerAtPosition(1, 1));
+            assertEquals(1, mGame.getNextPlayer());
+            assertTrue(events.get(events.size() - 1) instanceof GameAi.AiFinishEvent);
+        } finally {
+            Events.setPoster(null);
+        }
+    }
+
+    @Test
+    public void testSearchFailureIsDelivered() throws Exception {
+        final ArrayList<Runnable> queue = new ArrayList<>();
+        Executor queueExecutor = new Executor() {
+            @Override
+            public void execute(Runnable runnable) {
+                queue.add(runnable);
+            }
+        };
+        final ArrayList<GameAi.AiFinishEvent> finishEvents = new ArrayList<>();
+        MnkGame game = new MnkGame(3, 3, 3) {
+            @Override
+            public GameAi.MoveInterface getSolvedMove(Random random) {
+                throw new IllegalStateException("Search failed");
+            }
+
+            @Override
+            public void onAiFinishEvent(GameAi.AiFinishEvent aiFinishEvent) {
+                finishEvents.add(aiFinishEvent);
+            }
+        };
+        GameAi.withExecutors(queueExecutor, queueExecutor);
+        SearchHandle handle = GameAi.makeAiMove(game);
+        queue.remove(0).run();
+
+        // the failure is delivered on the callback executor
+        assertTrue(finishEvents.isEmpty());
+        assertEquals(1, queue.size());
+        queue.remove(0).run();
+        assertTrue(handle.isDone());
+        assertEquals(1, finishEvents.size());
+        assertNull(finishEvents.get(0).move);
+        assertEquals(game.getGeneration(), finishEvents.get(0).generation);
+
+        // a game posts the failure and keeps its players, until resumed
+        final boolean[] failing = {true};
+        TicTacToeGame ticTacToeGame = new TicTacToeGame(null) {
+            @Override
+            public GameAi.MoveInterface getSolvedMove(Random random) {
+                if (failing[0]) {
+                    throw new IllegalStateException("Search failed");
+                }
+                return super.getSolvedMove(random);
+            }
+        };
+        final ArrayList<Object> events = new ArrayList<>();
+        Events.setPoster(new Events.Poster() {
+            @Override
+            public void post(Object event) {
+                events.add(event);
+            }
+        });
+        try {
+            ticTacToeGame.setPlayerHuman(1, true);
+            ticTacToeGame.setPlayerHuman(2, false);
+            assertTrue(ticTacToeGame.makeMove(new Move(1, 0, 0)));
+            queue.remove(0).run();
+            queue.remove(0).run();
+            assertTrue(queue.isEmpty());
+            // the game posts its failure before the AiFinishEvent is posted
+            assertTrue(events.get(events.size() - 2) instanceof TicTacToeGame.AiFailedEvent);
+            assertFalse(ticTacToeGame.isPlayerHuman(2));
+            assertEquals(2, ticTacToeGame.getNextPlayer());
+
+            failing[0] = false;
+            ticTacToeGame.resume();
+            queue.remove(0).run();
+            queue.remove(0).run();
+            assertEquals(2, ticTacToeGame.getPlayerAtPosition(1, 1));
+            assertEquals(1, ticTacToeGame.getNextPlayer());
+        } finally {
+            Events.setPoster(null);
+        }
+    }
+
+    @Test
+    public void testResetDropsStaleMove() throws Exception {
+        final ArrayList<Runnable> queue = new ArrayList<>();
+        Executor queueExecutor = new Executor() {
+            @Override
+            public void execute(Runnable runnable) {
+                queue.add(runnable);
+            }
+        };
+        Executor directExecutor = new Executor() {
+            @Override
+            public void execute(Runnable runnable) {
+                runnable.run();
+            }
+        };
+        GameAi.withExecutors(queueExecutor, directExecutor);
+        mGame.setPlayerHuman(2, false);
+        assertTrue(mGame.makeMove(new Move(1, 0, 0)));
+        assertEquals(1, queue.size());
+
+        // the search for the old game runs after the reset, and its move is dropped
+        mGame.resetGame(1);
+        queue.remove(0).run();
+        assertEquals(0, mGame.getPlayerAtPosition(1, 1));
+        assertEquals(1, mGame.getNextPlayer());
+
+        // a move for an earlier generation is dropped even without cancelling
+        SearchHandle handle = GameAi.makeAiMove(mGame.createSearchCopy());
+        assertTrue(mGame.makeMove(new Move(1, 2, 2)));
+        queue.clear();
+        mGame.onAiFinishEvent(new GameAi.AiFinishEvent(new Move(2, 1, 1),
+                handle.getGameId(), handle.getGeneration()));
+        assertEquals(0, mGame.getPlayerAtPosition(1, 1));
+    }
+
+    @Test
+    public void testPonderDuringHumanTurn() throws Exception {
+        final ArrayList<Runnable> queue = new ArrayList<>();
+        Executor queueExecutor = new Executor() {
+            @Override
+            public void execute(Runnable runnable) {
+                queue.add(runnable);
+            }
+        };
+        Executor directExecutor = new Executor() {
+            @Override
+            public void execute(Runnable runnable) {
+                runnable.run();
+            }
+        };
+        GameAi.withExecutors(queueExecutor, directExecutor);
+        GameAi.withPondering(true);
+        GameAi.withMonteCarloPlayouts(1000);
+        try {
+            TicTacToeGame game = new TicTacToeGame(new int[4][4]);
+            game.setAiStrategy(GameAi.Strategy.MONTE_CARLO);
+            game.setPlayerHuman(1, true);
+            game.setPlayerHuman(2, false);
+            game.resetGame(1);
+            assertEquals(1, queue.size());
+
+            // a Monte Carlo ponder stops at its playout budget, before the human moves
+            queue.remove(0).run();
+            assertTrue(game.makeMove(new Move(1, 1, 1)));
+            assertEquals(1, queue.size());
+
+            // the reply continues from the pondered subtree of the human's move
+            queue.remove(0).run();
+            assertTrue(GameAi.getReusedPlayouts() > 0);
+            assertEquals(1, game.getNextPlayer());
+            assertEquals(14, game.getAvailableMoves().size());
+
+            // pondering starts again for the human's next move
+            assertEquals(1, queue.size());
+            game.cancelAiMove();
+            queue.remove(0).run();
+            assertTrue(queue.isEmpty());
+
+            // without a ponder, the reply starts a new tree
+            game.resetGame(1);
+            queue.clear();
+            assertTrue(game.makeMove(new Move(1, 1, 1)));
+            queue.remove(0).run();
+            assertEquals(0, GameAi.getReusedPlayouts());
+        } finally {
+            GameAi.withPondering(false);
+        }
+    }
+
+    @Test
+    public void testHumanMoveStopsPondering() throws Exception {
+        final ArrayList<Runnable> queue = new ArrayList<>();
+        Executor queueExecutor = new Executor() {
+            @Override
+            public void execute(Runnable runnable) {
+                queue.add(runnable);
+            }
+        };
+        GameAi.withExecutors(queueExecutor, queueExecutor);
+        GameAi.withPondering(true);
+        try {
+            // a negamax ponder of the whole 4x4 game runs until it is stopped
+            TicTacToeGame game = new TicTacToeGame(new int[4][4]);
+            game.setPlayerHuman(1, true);
+            game.setPlayerHuman(2, false);
+            game.resetGame(1);
+            assertEquals(1, queue.size());
+
+            final Runnable ponderTask = queue.remove(0);
+            final CountDownLatch started = new CountDownLatch(1);
+            Thread ponderThread = new Thread() {
+                @Override
+                public void run() {
+                    started.countDown();
+                    ponderTask.run();
+                }
+            };
+            ponderThread.start();
+            assertTrue(started.await(1, TimeUnit.SECONDS));
+            assertTrue(game.makeMove(new Move(1, 1, 1)));
+            ponderThread.join(1000);
+            assertFalse(ponderThread.isAlive());
+
+            // the reply is searched once the ponder has stopped
+            assertEquals(1, queue.size());
+            game.cancelAiMove();
+        } finally {
+            GameAi.withPondering(false);
+        }
+    }
+
+    @Test
+    public void testCancelSearch() throws Exception {
+        GameAi.withMonteCarloPlayouts(Integer.MAX_VALUE);
+        try {
+            // neither search would finish without cancelling
+            for (GameAi.Strategy strategy : GameAi.Strategy.values()) {
+                final CountDownLatch searching = new CountDownLatch(1);
+                MnkGame game = new MnkGame(15, 15, 5) {
+                    @Override
+                    public GameAi.MoveInterface getSolvedMove(Random random) {
+                        // the search starts as soon as no solved move is found
+                        searching.countDown();
+                        return super.getSolvedMove(random);
+                    }
+                };
+                game.setAiStrategy(strategy);
+                game.makeMove(new Move(1, 7, 7));
+                assertNull(cancelSearch(game, searching));
+            }
+        } finally {
+            GameAi.withMonteCarloPlayouts(GameAi.DEFAULT_MONTE_CARLO_PLAYOUTS);
+        }
+    }
+
+    private GameAi.MoveInterface cancelSearch(final GameAi.GameAiInterface game, CountDownLatch searching)
+            throws Exception {
+        final SearchHandle handle = new SearchHandle(game.getGameId(), game.getGeneration());
+        final GameAi.MoveInterface[] result = new GameAi.MoveInterface[]{new Move(1, 0, 0)};
+        Thread thread = new Thread() {
+            @Override
+            public void run() {
+                result[0] = GameAi.getBestMove(game, 0, handle);
+            }
+        };
+        thread.start();
+        assertTrue(searching.await(10, TimeUnit.SECONDS));
+        handle.cancel();
+        thread.join(10000);
+        assertFalse(thread.isAlive());
+        return result[0];
+    }
+}
@@ -0,0 +1,198 @@
+package com.iantmeyer.tic_tac_toe.game;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.iantmeyer.tic_tac_toe.game.TicTacToeGame.Move;
+import com.iantmeyer.tic_tac_toe.game.TicTacToeGame.State;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.concurrent.Executor;
+
+import static org.junit.Assert.*;
+
+public class GameHistoryStoreTest {
+
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder();
+
+    private File mFile;
+    private final ArrayList<Runnable> mQueuedWrites = new ArrayList<>();
+    private final Executor mQueue = new Executor() {
+        @Override
+        public void execute(Runnable runnable) {
+            mQueuedWrites.add(runnable);
+        }
+    };
+    private GameHistoryStore mStore;
+
+    @Before
+    public void setUp() throws Exception {
+        mFile = new File(mFolder.getRoot(), "history.bin");
+        mStore = new GameHistoryStore(mFile, mQueue);
+    }
+
+    @Test
+    public void testRecordSize() throws Exception {
+        GameRecord record = new GameRecord(3, 1, State.DRAW, new int[]{4, 0, 8, 2, 6, 3, 5, 1, 7});
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        record.writeTo(bytes);
+        assertEquals(8, bytes.size());
+
+        GameRecord decoded = GameRecord.readFrom(bytes.toByteArray(), new int[1]);
+        assertEquals(record.toString(), decoded.toString());
+
+        // 19x19 cells take 9 bits
+        int[] moves = new int[19 * 19];
+        for (int idx = 0; idx < moves.length; idx++) {
+            moves[idx] = moves.length - 1 - idx;
+        }
+        record = new GameRecord(19, 2, State.PLAYER_2_WON, moves);
+        bytes.reset();
+        record.writeTo(bytes);
+        assertEquals(1 + 1 + 2 + (moves.length * 9 + 7) / 8, bytes.size());
+        assertEquals(record.toString(), GameRecord.readFrom(bytes.toByteArray(), new int[1]).toString());
+    }
+
+    @Test
+    public void testManyBlocks() throws Exception {
+        int games = 3 * GameHistoryStore.BLOCK_BYTES / 8;
+        int writes = 0;
+        for (int idx = 0; idx < games; idx++) {
+            mStore.add(createRecord(idx));
+            // a full block is written in the background
+            if (!mQueuedWrites.isEmpty()) {
+                assertEquals(1, mQueuedWrites.size());
+                mQueuedWrites.remove(0).run();
+                writes++;
+            }
+        }
+        assertEquals(writes, mStore.getBlockCount());
+        mStore.flush();
+        assertTrue(writes >= 2);
+        assertEquals(writes + 1, mStore.getBlockCount());
+
+        GameHistoryStore reopened = new GameHistoryStore(mFile, mQueue);
+        assertEquals(games, reopened.getGameCount());
+        assertEquals(createRecord(0).toString(), reopened.get(0).toString());
+        assertEquals(createRecord(games / 2).toString(), reopened.get(games / 2).toString());
+        assertEquals(createRecord(games - 1).toString(), reopened.get(games - 1).toString());
+    }
+
+    @Test
+    public void testExportImport() throws Exception {
+        for (int idx = 0; idx < 100; idx++) {
+            mStore.add(createRecord(idx));
+        }
+        StringWriter export = new StringWriter();
+        assertEquals(100, mStore.exportGames(export));
+
+        GameHistoryStore imported = new GameHistoryStore(new File(mFolder.getRoot(), "imported.bin"), mQueue);
+        assertEquals(100, imported.importGames(new StringReader(export.toString())));
+        assertEquals(100, imported.getGameCount());
+        StringWriter reexport = new StringWriter();
+        imported.exportGames(reexport);
+        assertEquals(export.toString(), reexport.toString());
+    }
+
+    @Test
+    public void testRebuildsIndex() throws Exception {
+        for (int idx = 0; idx < 10; idx++) {
+            mStore.add(createRecord(idx));
+        }
+        mStore.flush();
+        // the second block overwrites the footer of one index entry after the first
+        long secondBlock = mFile.length() - 12 - 16;
+        mStore.add(createRecord(10));
+        mStore.flush();
+
+        // tear the footer written with the second block
+        RandomAccessFile file = new RandomAccessFile(mFile, "rw");
+        file.setLength(file.length() - 1);
+        file.close();
+        GameHistoryStore reopened = new GameHistoryStore(mFile, mQueue);
+        assertEquals(11, reopened.getGameCount());
+        assertEquals(2, reopened.getBlockCount());
+
+        // tear the second block, which is dropped and overwritten
+        file = new RandomAccessFile(mFile, "rw");
+        file.setLength(secondBlock + 3);
+        file.close();
+        reopened = new GameHistoryStore(mFile, mQueue);
+        assertEquals(10, reopened.getGameCount());
+        reopened.add(createRecord(11));
+        reopened.flush();
+        reopened = new GameHistoryStore(mFile, mQueue);
+        assertEquals(11, reopened.getGameCount());
+        assertEquals(createRecord(11).toString(), reopened.get(10).toString());
+    }
+
+    @Test
+    public void testUnreadableFileIsKept() throws Exception {
+        byte[] other = "not a game history".getBytes("UTF-8");
+        FileOutputStream out = new FileOutputStream(mFile);
+        out.write(other);
+        out.close();
+
+        mStore.add(createRecord(0));
+        mStore.add(createRecord(1));
+        mStore.flush();
+        try {
+            mStore.getGameCount();
+            fail("Read the game count of " + mFile);
+        } catch (IOException e) {
+            // expected
+        }
+        assertEquals(other.length, mFile.length());
+
+        // the games stay pending until the index can be loaded
+        assertTrue(mFile.delete());
+        mStore.add(createRecord(2));
+        mStore.flush();
+        assertEquals(3, mStore.getGameCount());
+        assertEquals(createRecord(0).toString(), mStore.get(0).toString());
+        assertEquals(createRecord(2).toString(), mStore.get(2).toString());
+    }
+
+    @Test
+    public void testGameIsRecorded() throws Exception {
+        TicTacToeGame game = new TicTacToeGame(null);
+        game.setPlayerHuman(1, true);
+        game.setPlayerHuman(2, true);
+        game.setHistoryStore(mStore);
+        game.resetGame(2);
+        assertTrue(game.makeMove(new Move(2, 0, 0)));
+        assertTrue(game.makeMove(new Move(1, 1, 1)));
+        assertTrue(game.makeMove(new Move(2, 0, 1)));
+        assertTrue(game.makeMove(new Move(1, 2, 2)));
+        assertTrue(game.makeMove(new Move(2, 0, 2)));
+        assertEquals(State.PLAYER_2_WON, game.getState());
+
+        // an abandoned game is kept too
+        game.resetGame(1);
+        assertTrue(game.makeMove(new Move(1, 1, 1)));
+        game.resetGame(1);
+
+        mStore.flush();
+        assertEquals(2, mStore.getGameCount());
+        assertEquals("3 2 PLAYER_2_WON 0 4 1 8 2", mStore.get(0).toString());
+        assertEquals("3 1 IN_PROGRESS 4", mStore.get(1).toString());
+    }
+
+    private static GameRecord createRecord(int seed) {
+        int[] moves = new int[1 + seed % 9];
+        for (int idx = 0; idx < moves.length; idx++) {
+            moves[idx] = (seed + idx * 4) % 9;
+        }
+        return new GameRecord(3, 1 + seed % 2, State.values()[seed % 3], moves);
+    }
+}
@@ -0,0 +1,68 @@
+package com.iantmeyer.tic_tac_toe.game;
+
+import org.junit.Test;
+
+import com.iantmeyer.tic_tac_toe.game.TicTacToeGame.Move;
+import com.iantmeyer.tic_tac_toe.game.TicTacToeGame.State;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+public class GameSnapshotTest {
+
+    @Test
+    public void testRestoresGame() throws Exception {
+        TicTacToeGame game = new TicTacToeGame(null);
+        game.setPlayerHuman(1, true);
+        game.setPlayerHuman(2, true);
+        game.resetGame(2);
+        assertTrue(game.makeMove(new Move(2, 1, 1)));
+        assertTrue(game.makeMove(new Move(1, 0, 2)));
+        game.setPlayerHuman(1, false);
+
+        byte[] record = GameSnapshot.of(game).toBytes();
+        TicTacToeGame restored = TicTacToeGame.restore(GameSnapshot.fromBytes(record));
+
+        assertTrue(Arrays.deepEquals(game.getBoard(), restored.getBoard()));
+        assertEquals(State.IN_PROGRESS, restored.getState());
+        assertEquals(2, restored.getNextPlayer());
+        assertFalse(restored.isPlayerHuman(1));
+        assertTrue(restored.isPlayerHuman(2));
+    }
+
+    @Test
+    public void testLargeBoard() throws Exception {
+        byte[] squares = new byte[8 * 8];
+        for (int cell = 0; cell < squares.length; cell += 7) {
+            squares[cell] = (byte) (1 + cell % 2);
+        }
+        GameSnapshot snapshot = new GameSnapshot(8, squares, State.IN_PROGRESS, 1, true, false);
+        byte[] record = snapshot.toBytes();
+        assertEquals(30, record.length);
+
+        GameSnapshot decoded = GameSnapshot.fromBytes(record);
+        assertEquals(8, decoded.getSize());
+        assertTrue(Arrays.deepEquals(snapshot.getBoard(), decoded.getBoard()));
+        assertTrue(Arrays.deepEquals(snapshot.getBoard(), TicTacToeGame.restore(decoded).getBoard()));
+    }
+
+    @Test(expected = IOException.class)
+    public void testUnsupportedSizeRecord() throws Exception {
+        GameSnapshot snapshot = new GameSnapshot(9, new byte[9 * 9], State.SET_UP, 1, true, true);
+        GameSnapshot.fromBytes(snapshot.toBytes());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testRestoreUnsupportedSize() throws Exception {
+        TicTacToeGame.restore(new GameSnapshot(9, new byte[9 * 9], State.SET_UP, 1, true, true));
+    }
+
+    @Test(expected = IOException.class)
+    public void testCorruptRecord() throws Exception {
+        byte[] record = GameSnapshot.of(new TicTacToeGame(null)).toBytes();
+        record[record.length / 2] ^= 1;
+        GameSnapshot.fromBytes(record);
+    }
+}
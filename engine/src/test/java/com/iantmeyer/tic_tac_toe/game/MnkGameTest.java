@@ -0,0 +1,230 @@
+package com.iantmeyer.tic_tac_toe.game;
+
+import org.junit.After;
+import org.junit.Test;
+
+import com.iantmeyer.tic_tac_toe.game.TicTacToeGame.Move;
+import com.iantmeyer.tic_tac_toe.game.TicTacToeGame.State;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class MnkGameTest {
+
+    @After
+    public void tearDown() throws Exception {
+        GameAi.withMonteCarloPlayouts(GameAi.DEFAULT_MONTE_CARLO_PLAYOUTS);
+        GameAi.withParallelism(Runtime.getRuntime().availableProcessors());
+    }
+
+    @Test
+    public void testGomokuRowWin() throws Exception {
+        MnkGame game = new MnkGame(15, 15, 5);
+        for (int column = 3; column < 7; column++) {
+            assertTrue(game.makeMove(new Move(1, 7, column)));
+            assertTrue(game.makeMove(new Move(2, 0, column)));
+        }
+        assertFalse(game.isWinningMove(new Move(1, 8, 7)));
+        assertTrue(game.isWinningMove(new Move(1, 7, 7)));
+        assertTrue(game.isWinningMove(new Move(1, 7, 2)));
+
+        assertTrue(game.makeMove(new Move(1, 7, 7)));
+        assertEquals(State.PLAYER_1_WON, game.getState());
+        assertFalse(game.makeMove(new Move(2, 0, 7)));
+    }
+
+    @Test
+    public void testDiagonalWinAtEdge() throws Exception {
+        MnkGame game = new MnkGame(6, 9, 4);
+        game.makeMove(new Move(1, 0, 0));
+        game.makeMove(new Move(2, 5, 8));
+        game.makeMove(new Move(1, 1, 1));
+        game.makeMove(new Move(2, 4, 7));
+        game.makeMove(new Move(1, 2, 2));
+        game.makeMove(new Move(2, 3, 6));
+
+        // the diagonal of player 2 ends in the corner
+        assertTrue(game.isWinningMove(new Move(1, 3, 3)));
+        assertTrue(game.isWinningMove(new Move(2, 2, 5)));
+        assertFalse(game.isWinningMove(new Move(2, 2, 4)));
+    }
+
+    @Test
+    public void testRectangularBoard() throws Exception {
+        // 4 in a row only fits along the rows of a 3x5 board
+        MnkGame game = new MnkGame(3, 5, 4);
+        game.makeMove(new Move(1, 0, 0));
+        game.makeMove(new Move(2, 1, 0));
+        game.makeMove(new Move(1, 0, 1));
+        game.makeMove(new Move(2, 1, 1));
+        game.makeMove(new Move(1, 0, 2));
+        game.makeMove(new Move(2, 1, 2));
+        assertTrue(game.isWinningMove(new Move(1, 0, 3)));
+        assertFalse(game.isWinningMove(new Move(1, 2, 0)));
+        assertEquals(0, game.getPlayerAtPosition(3, 0));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testWinLengthTooLong() throws Exception {
+        new MnkGame(3, 4, 5);
+    }
+
+    @Test
+    public void testMatchesTicTacToe() throws Exception {
+        Random random = new Random(7);
+        for (int gameIdx = 0; gameIdx < 200; gameIdx++) {
+            MnkGame mnkGame = new MnkGame(3, 3, 3);
+            TicTacToeGame ticTacToeGame = new TicTacToeGame(null);
+            ticTacToeGame.setPlayerHuman(1, true);
+            ticTacToeGame.setPlayerHuman(2, true);
+            while (mnkGame.getState() == State.SET_UP || mnkGame.getState() == State.IN_PROGRESS) {
+                ArrayList<GameAi.MoveInterface> moves = mnkGame.getAvailableMoves();
+                assertEquals(ticTacToeGame.getAvailableMoves().size(), moves.size());
+                for (GameAi.MoveInterface move : moves) {
+                    assertEquals(ticTacToeGame.isWinningMove(move), mnkGame.isWinningMove(move));
+                    assertEquals(ticTacToeGame.isDrawMove(move), mnkGame.isDrawMove(move));
+                }
+                assertEquals(ticTacToeGame.getGameValue(1), mnkGame.getGameValue(1), 0);
+
+                Move move = (Move) moves.get(random.nextInt(moves.size()));
+                assertTrue(mnkGame.makeMove(move));
+                assertTrue(ticTacToeGame.makeMove(move));
+            }
+            assertEquals(ticTacToeGame.getState(), mnkGame.getState());
+        }
+    }
+
+    @Test
+    public void testSearchMoves() throws Exception {
+        MnkGame game = new MnkGame(7, 7, 4);
+        game.makeMove(new Move(1, 3, 3));
+        long hash = game.getPositionHash();
+        double value = game.getGameValue(1);
+
+        GameAi.GameAiInterface copy = game.createSearchCopy();
+        copy.makeSearchMove(copy.encodeMove(new Move(2, 2, 2)));
+        copy.makeSearchMove(copy.encodeMove(new Move(1, 4, 4)));
+        assertNotEquals(hash, copy.getPositionHash());
+        assertEquals(46, copy.getAvailableMoves().size());
+
+        copy.unmakeSearchMove();
+        copy.unmakeSearchMove();
+        assertEquals(hash, copy.getPositionHash());
+        assertEquals(value, copy.getGameValue(1), 0);
+        assertEquals(2, copy.getNextPlayer());
+
+        // the game itself is untouched
+        assertEquals(0, game.getPlayerAtPosition(2, 2));
+        assertEquals(48, game.getEmptyCount());
+    }
+
+    @Test
+    public void testGameAiBlocksThree() throws Exception {
+        MnkGame game = new MnkGame(9, 9, 4);
+        game.makeMove(new Move(1, 4, 3));
+        game.makeMove(new Move(2, 4, 2));
+        game.makeMove(new Move(1, 4, 4));
+        game.makeMove(new Move(2, 0, 0));
+        game.makeMove(new Move(1, 4, 5));
+
+        GameAi.with(2);
+        Move move = (Move) GameAi.getBestMove(game);
+        GameAi.with(-1);
+        assertEquals(4, move.row);
+        assertEquals(6, move.column);
+    }
+
+    @Test
+    public void testMonteCarloTakesWin() throws Exception {
+        MnkGame game = new MnkGame(7, 7, 4);
+        game.setAiStrategy(GameAi.Strategy.MONTE_CARLO);
+        game.makeMove(new Move(1, 3, 2));
+        game.makeMove(new Move(2, 3, 1));
+        game.makeMove(new Move(1, 3, 3));
+        game.makeMove(new Move(2, 0, 0));
+        game.makeMove(new Move(1, 3, 4));
+        game.makeMove(new Move(2, 6, 6));
+
+        // a seeded search on one thread is repeatable
+        GameAi.withParallelism(1);
+        GameAi.withRandomSeed(1);
+        GameAi.withMonteCarloPlayouts(5000);
+        Move move = (Move) GameAi.getBestMove(game);
+        assertEquals(3, move.row);
+        assertEquals(5, move.column);
+    }
+
+    @Test
+    public void testMonteCarloBlocksLoss() throws Exception {
+        MnkGame game = new MnkGame(7, 7, 4);
+        game.setAiStrategy(GameAi.Strategy.MONTE_CARLO);
+        game.makeMove(new Move(1, 3, 2));
+        game.makeMove(new Move(2, 3, 1));
+        game.makeMove(new Move(1, 3, 3));
+        game.makeMove(new Move(2, 0, 0));
+        game.makeMove(new Move(1, 3, 4));
+
+        GameAi.withParallelism(1);
+        GameAi.withRandomSeed(1);
+        GameAi.withMonteCarloPlayouts(20000);
+        Move move = (Move) GameAi.getBestMove(game);
+        assertEquals(3, move.row);
+        assertEquals(5, move.column);
+    }
+
+    @Test
+    public void testParallelMonteCarlo() throws Exception {
+        MnkGame game = new MnkGame(7, 7, 4);
+        game.setAiStrategy(GameAi.Strategy.MONTE_CARLO);
+        game.makeMove(new Move(1, 3, 2));
+        game.makeMove(new Move(2, 3, 1));
+        game.makeMove(new Move(1, 3, 3));
+        game.makeMove(new Move(2, 0, 0));
+        game.makeMove(new Move(1, 3, 4));
+
+        GameAi.withParallelism(4);
+        GameAi.withMonteCarloPlayouts(20000);
+        try {
+            Move move = (Move) GameAi.getBestMove(game);
+            assertEquals(3, move.row);
+            assertEquals(5, move.column);
+        } finally {
+            GameAi.withParallelism(Runtime.getRuntime().availableProcessors());
+        }
+        // the game is unchanged by the workers
+        assertEquals(44, game.getEmptyCount());
+    }
+
+    @Test
+    public void testMonteCarloTimeBudget() throws Exception {
+        MnkGame game = new MnkGame(15, 15, 5);
+        game.setAiStrategy(GameAi.Strategy.MONTE_CARLO);
+
+        long start = System.nanoTime();
+        Move move = (Move) GameAi.getBestMove(game, 200);
+        long elapsedMillis = (System.nanoTime() - start) / 1000000;
+        assertTrue(game.makeMove(move));
+        assertTrue("took " + elapsedMillis + "ms", elapsedMillis < 1000);
+    }
+
+    @Test
+    public void testMonteCarloSubtree() throws Exception {
+        MnkGame game = new MnkGame(5, 5, 4);
+        MonteCarloTreeSearch search = new MonteCarloTreeSearch(game.createSearchCopy(), new Random(1));
+        search.search(5000, 0, null, null);
+
+        Move move = new Move(1, 2, 2);
+        assertTrue(game.makeMove(move));
+        MonteCarloTreeSearch subtree = search.getSubtree(move, game.createSearchCopy(), new Random(2));
+        assertNotNull(subtree);
+        int reusedPlayouts = subtree.getRootVisits();
+        assertTrue(reusedPlayouts > 0);
+
+        // the reused playouts count toward the budget
+        Move reply = (Move) subtree.search(5000, 0, null, null);
+        assertEquals(5000 - reusedPlayouts, subtree.getPlayouts());
+        assertTrue(game.makeMove(reply));
+    }
+}
@@ -0,0 +1,140 @@
+package com.iantmeyer.tic_tac_toe.game;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.iantmeyer.tic_tac_toe.game.TicTacToeGame.Move;
+import com.iantmeyer.tic_tac_toe.game.TicTacToeGame.State;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.Executor;
+
+import static org.junit.Assert.*;
+
+public class MoveJournalTest {
+
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder();
+
+    private File mFile;
+    private final ArrayList<Runnable> mQueuedWrites = new ArrayList<>();
+    private final Executor mQueue = new Executor() {
+        @Override
+        public void execute(Runnable runnable) {
+            mQueuedWrites.add(runnable);
+        }
+    };
+    private MoveJournal mJournal;
+    private TicTacToeGame mGame;
+
+    @Before
+    public void setUp() throws Exception {
+        mFile = new File(mFolder.getRoot(), "game.journal");
+        mJournal = new MoveJournal(mFile, mQueue);
+        mGame = new TicTacToeGame(null);
+        mGame.setPlayerHuman(1, true);
+        mGame.setPlayerHuman(2, true);
+        mGame.setJournal(mJournal);
+    }
+
+    @Test
+    public void testRecoversGame() throws Exception {
+        assertTrue(mGame.makeMove(new Move(1, 1, 1)));
+        assertTrue(mGame.makeMove(new Move(2, 0, 0)));
+        assertTrue(mGame.makeMove(new Move(1, 2, 2)));
+        mGame.setPlayerHuman(1, false);
+        mJournal.flush();
+
+        TicTacToeGame recovered = new MoveJournal(mFile, mQueue).recover();
+        assertTrue(Arrays.deepEquals(mGame.getBoard(), recovered.getBoard()));
+        assertEquals(State.IN_PROGRESS, recovered.getState());
+        assertEquals(2, recovered.getNextPlayer());
+        assertFalse(recovered.isPlayerHuman(1));
+        assertTrue(recovered.isPlayerHuman(2));
+    }
+
+    @Test
+    public void testGroupCommit() throws Exception {
+        mJournal.flush();
+        long checkpointLength = mFile.length();
+        assertEquals(1, mJournal.getGroupCount());
+
+        mQueuedWrites.clear();
+        assertTrue(mGame.makeMove(new Move(1, 0, 0)));
+        assertTrue(mGame.makeMove(new Move(2, 1, 1)));
+        assertTrue(mGame.makeMove(new Move(1, 0, 1)));
+        assertEquals(1, mQueuedWrites.size());
+        mQueuedWrites.get(0).run();
+
+        // three moves of 2 bytes, in one group framed by 6 bytes
+        assertEquals(2, mJournal.getGroupCount());
+        assertEquals(checkpointLength + 12, mFile.length());
+    }
+
+    @Test
+    public void testDropsTornGroup() throws Exception {
+        assertTrue(mGame.makeMove(new Move(1, 1, 1)));
+        mJournal.flush();
+        FileOutputStream out = new FileOutputStream(mFile, true);
+        out.write(new byte[]{0, 2, 0x12});
+        out.close();
+
+        MoveJournal journal = new MoveJournal(mFile, mQueue);
+        TicTacToeGame recovered = journal.recover();
+        assertEquals(1, recovered.getPlayerAtPosition(1, 1));
+        assertEquals(2, recovered.getNextPlayer());
+
+        // the torn group is cut off before appending
+        journal.appendMove(0, 2);
+        journal.flush();
+        recovered = new MoveJournal(mFile, mQueue).recover();
+        assertEquals(2, recovered.getPlayerAtPosition(0, 0));
+        assertEquals(1, recovered.getNextPlayer());
+    }
+
+    @Test
+    public void testResetStartsNewJournal() throws Exception {
+        mJournal.flush();
+        long checkpointLength = mFile.length();
+        assertTrue(mGame.makeMove(new Move(1, 1, 1)));
+        assertTrue(mGame.makeMove(new Move(2, 0, 0)));
+        mJournal.flush();
+        assertTrue(mFile.length() > checkpointLength);
+
+        mGame.resetGame(2);
+        mJournal.flush();
+        assertEquals(checkpointLength, mFile.length());
+        TicTacToeGame recovered = new MoveJournal(mFile, mQueue).recover();
+        assertEquals(0, recovered.getPlayerAtPosition(1, 1));
+        assertEquals(2, recovered.getNextPlayer());
+    }
+
+    @Test
+    public void testRetriesFailedCheckpoint() throws Exception {
+        assertTrue(mGame.makeMove(new Move(1, 1, 1)));
+        mJournal.flush();
+        long length = mFile.length();
+
+        // a directory in the way of the temporary file fails the checkpoint of the reset
+        File tempFile = new File(mFile.getPath() + ".tmp");
+        assertTrue(tempFile.mkdir());
+        mGame.resetGame(2);
+        mJournal.flush();
+        assertTrue(mGame.makeMove(new Move(2, 0, 0)));
+        mJournal.flush();
+        // the moves of the new game are not appended to the old one
+        assertEquals(length, mFile.length());
+
+        assertTrue(tempFile.delete());
+        mJournal.flush();
+        TicTacToeGame recovered = new MoveJournal(mFile, mQueue).recover();
+        assertEquals(0, recovered.getPlayerAtPosition(1, 1));
+        assertEquals(2, recovered.getPlayerAtPosition(0, 0));
+        assertEquals(1, recovered.getNextPlayer());
+    }
+}
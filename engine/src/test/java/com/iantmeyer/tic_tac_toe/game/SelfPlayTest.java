@@ -0,0 +1,99 @@
+package com.iantmeyer.tic_tac_toe.game;
+
+import org.junit.Test;
+
+import com.iantmeyer.tic_tac_toe.game.TicTacToeGame.State;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.Assert.*;
+
+public class SelfPlayTest {
+
+    @Test
+    public void testPlaysPerfectGames() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        SelfPlay.Result result = new SelfPlay(3, SearchConfig.DEFAULT, 2, 0, 7).play(500, out);
+        assertEquals(500, result.getGameCount());
+        // perfect play on a 3x3 board is always a draw
+        assertEquals(500, result.getDraws());
+        assertTrue(result.getGamesPerSecond() > 0);
+
+        ArrayList<String> lines = readLines(out.toByteArray());
+        assertEquals(500, lines.size());
+        int firstPlayer1 = 0;
+        for (String line : lines) {
+            GameRecord record = GameRecord.parse(line);
+            assertEquals(3, record.getSize());
+            assertEquals(State.DRAW, record.getResult());
+            // a draw ends as soon as no line is left open
+            assertTrue(record.getMoveCount() >= 8);
+            if (record.getFirstPlayer() == 1) {
+                firstPlayer1++;
+            }
+        }
+        assertEquals(250, firstPlayer1);
+    }
+
+    @Test
+    public void testSeededGames() throws Exception {
+        ByteArrayOutputStream oneThread = new ByteArrayOutputStream();
+        new SelfPlay(3, SearchConfig.DEFAULT, 1, 0, 42).play(200, oneThread);
+        ByteArrayOutputStream threeThreads = new ByteArrayOutputStream();
+        new SelfPlay(3, SearchConfig.DEFAULT, 3, 0, 42).play(200, threeThreads);
+        ByteArrayOutputStream otherSeed = new ByteArrayOutputStream();
+        new SelfPlay(3, SearchConfig.DEFAULT, 1, 0, 43).play(200, otherSeed);
+
+        // the same games, in the order the workers finished them
+        ArrayList<String> games = readLines(oneThread.toByteArray());
+        ArrayList<String> sameGames = readLines(threeThreads.toByteArray());
+        Collections.sort(games);
+        Collections.sort(sameGames);
+        assertEquals(games, sameGames);
+        assertNotEquals(readLines(oneThread.toByteArray()), readLines(otherSeed.toByteArray()));
+    }
+
+    @Test
+    public void testSeededGamesWithTable() throws Exception {
+        // a depth limited search would use the entries left by the worker's earlier games
+        SearchConfig config = SearchConfig.DEFAULT.withMaxDepth(3);
+        ByteArrayOutputStream oneThread = new ByteArrayOutputStream();
+        new SelfPlay(4, config, 1, 1 << 20, 42).play(30, oneThread);
+        ByteArrayOutputStream threeThreads = new ByteArrayOutputStream();
+        new SelfPlay(4, config, 3, 1 << 20, 42).play(30, threeThreads);
+
+        ArrayList<String> games = readLines(oneThread.toByteArray());
+        ArrayList<String> sameGames = readLines(threeThreads.toByteArray());
+        Collections.sort(games);
+        Collections.sort(sameGames);
+        assertEquals(games, sameGames);
+    }
+
+    @Test
+    public void testLargerBoard() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        SelfPlay.Result result = new SelfPlay(4, SearchConfig.DEFAULT.withMaxDepth(2), 2, 1 << 20, 1).play(10, out);
+        assertEquals(10, result.getGameCount());
+        for (String line : readLines(out.toByteArray())) {
+            assertEquals(4, GameRecord.parse(line).getSize());
+        }
+    }
+
+    private static ArrayList<String> readLines(byte[] gzip) throws Exception {
+        // every batch is its own GZIP member
+        BufferedReader reader = new BufferedReader(new InputStreamReader(
+                new GZIPInputStream(new ByteArrayInputStream(gzip)), "UTF-8"));
+        ArrayList<String> lines = new ArrayList<>();
+        String line;
+        while ((line = reader.readLine()) != null) {
+            lines.add(line);
+        }
+        return lines;
+    }
+}
@@ -0,0 +1,165 @@
+package com.iantmeyer.tic_tac_toe.game;
+
+import org.junit.After;
+import org.junit.BeforeClass;
+import org.junit.ClassRule;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.iantmeyer.tic_tac_toe.game.TicTacToeGame.Move;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class TablebaseTest {
+
+    @ClassRule
+    public static TemporaryFolder sTablebaseFolder = new TemporaryFolder();
+
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder();
+
+    private static File s4x4File;
+
+    @BeforeClass
+    public static void generate4x4() throws Exception {
+        s4x4File = new File(sTablebaseFolder.getRoot(), "tablebase_4x4.bin");
+        Tablebase.generate(4, s4x4File, Runtime.getRuntime().availableProcessors());
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        GameAi.withTablebase(null);
+        GameAi.with(-1);
+        GameAi.withTranspositionTableSize(GameAi.DEFAULT_TABLE_BYTES);
+    }
+
+    @Test
+    public void testMatchesPerfectPlayTable() throws Exception {
+        File file = new File(mFolder.getRoot(), "tablebase_3x3.bin");
+        Tablebase.generate(3, file, 2);
+        Tablebase tablebase = Tablebase.open(file);
+        assertEquals(3, tablebase.getSize());
+
+        int positions = 0;
+        for (int own = 0; own < 1 << 9; own++) {
+            for (int opponent = 0; opponent < 1 << 9; opponent++) {
+                int entry = (own & opponent) == 0 ? PerfectPlayTable.lookup(own, opponent) : 0;
+                if (entry == 0) {
+                    continue;
+                }
+                positions++;
+                assertEquals(PerfectPlayTable.getValue(entry), tablebase.getValue(own, opponent));
+                int value = PerfectPlayTable.getValue(entry);
+                int bestMoves = tablebase.getBestMoves(own, opponent);
+                assertTrue(bestMoves != 0);
+                assertEquals(bestMoves, bestMoves & ~(own | opponent));
+                for (int moves = bestMoves; moves != 0; moves &= moves - 1) {
+                    int move = moves & -moves;
+                    if ((PerfectPlayTable.getBestMoves(entry) & move) != 0) {
+                        continue;
+                    }
+                    // the table prefers the fastest win, any move keeping the value is as good
+                    int entryAfter = PerfectPlayTable.lookup(opponent, own | move);
+                    if (value == PerfectPlayTable.WIN) {
+                        assertTrue(entryAfter == 0 || PerfectPlayTable.getValue(entryAfter) == PerfectPlayTable.LOSS);
+                    } else if (value == PerfectPlayTable.DRAW) {
+                        assertEquals(PerfectPlayTable.DRAW, PerfectPlayTable.getValue(entryAfter));
+                    }
+                }
+            }
+        }
+        // every reachable position before the end of a game
+        assertEquals(4480, positions);
+    }
+
+    @Test
+    public void testSolves4x4() throws Exception {
+        // 3^16 values of 2 bits and the header
+        assertEquals(8 + (43046721 + 3) / 4, s4x4File.length());
+        Tablebase tablebase = Tablebase.open(s4x4File);
+        assertEquals(PerfectPlayTable.DRAW, tablebase.getValue(0, 0));
+
+        // the searched value of positions in random games
+        GameAi.with(-1);
+        GameAi.withTranspositionTableSize(1 << 20);
+        Random random = new Random(4);
+        for (int idx = 0; idx < 10; idx++) {
+            TicTacToeGame game = new TicTacToeGame(new int[4][4]);
+            game.setPlayerHuman(1, true);
+            game.setPlayerHuman(2, true);
+            game.resetGame(1);
+            while (game.getBitBoard().getEmptyCount() > 9 && game.getState() == TicTacToeGame.State.IN_PROGRESS
+                    || game.getState() == TicTacToeGame.State.SET_UP) {
+                int cell = random.nextInt(16);
+                game.makeMove(new Move(game.getNextPlayer(), cell / 4, cell % 4));
+            }
+            if (game.getState() != TicTacToeGame.State.IN_PROGRESS) {
+                continue;
+            }
+            BitBoard board = game.getBitBoard();
+            int value = tablebase.getValue(board.getPlayerBits(game.getNextPlayer()),
+                    board.getPlayerBits(3 - game.getNextPlayer()));
+            int score = GameAi.getScore(game);
+            assertEquals(score > 0 ? PerfectPlayTable.WIN : score < 0 ? PerfectPlayTable.LOSS : PerfectPlayTable.DRAW, value);
+        }
+    }
+
+    @Test
+    public void testGameAiLooksUpMoves() throws Exception {
+        Tablebase tablebase = Tablebase.open(s4x4File);
+        GameAi.withTablebase(tablebase);
+        GameAi.withRandomSeed(1);
+
+        TicTacToeGame game = new TicTacToeGame(new int[4][4]) {
+            @Override
+            public GameAi.GameAiInterface createSearchCopy() {
+                throw new AssertionError("Searched a position in the tablebase");
+            }
+        };
+        game.setPlayerHuman(1, true);
+        game.setPlayerHuman(2, true);
+        game.resetGame(1);
+
+        // perfect play on an empty 4x4 board is a draw
+        while (game.getState() == TicTacToeGame.State.SET_UP || game.getState() == TicTacToeGame.State.IN_PROGRESS) {
+            BitBoard board = game.getBitBoard();
+            int bestMoves = tablebase.getBestMoves(board.getPlayerBits(game.getNextPlayer()),
+                    board.getPlayerBits(3 - game.getNextPlayer()));
+            Move move = (Move) GameAi.getBestMove(game);
+            assertNotNull(move);
+            assertTrue((bestMoves & (1 << (move.row * 4 + move.column))) != 0);
+            assertTrue(game.makeMove(move));
+        }
+        assertEquals(TicTacToeGame.State.DRAW, game.getState());
+    }
+
+    @Test
+    public void testFailedWriteLeavesNoFile() throws Exception {
+        // a directory in the way of the tablebase can not be renamed over
+        File file = mFolder.newFolder("tablebase_3x3.bin");
+        assertTrue(new File(file, "other").createNewFile());
+        try {
+            Tablebase.generate(3, file, 1);
+            fail("Renamed over a directory");
+        } catch (IOException e) {
+            // expected
+        }
+        assertArrayEquals(new String[]{file.getName()}, mFolder.getRoot().list());
+    }
+
+    @Test(expected = IOException.class)
+    public void testTruncatedFile() throws Exception {
+        File file = new File(mFolder.getRoot(), "tablebase_3x3.bin");
+        Tablebase.generate(3, file, 1);
+        RandomAccessFile out = new RandomAccessFile(file, "rw");
+        out.setLength(file.length() - 1);
+        out.close();
+        Tablebase.open(file);
+    }
+}
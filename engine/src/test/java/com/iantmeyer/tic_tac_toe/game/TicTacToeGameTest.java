@@ -0,0 +1,433 @@
+package com.iantmeyer.tic_tac_toe.game;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.iantmeyer.tic_tac_toe.game.TicTacToeGame;
+import com.iantmeyer.tic_tac_toe.game.TicTacToeGame.Move;
+
+import java.util.ArrayList;
+
+import static org.junit.Assert.*;
+
+public class TicTacToeGameTest {
+
+    private TicTacToeGame mGame;
+
+    @Before
+    public void setUp() throws Exception {
+        mGame = new TicTacToeGame(null);
+        // moves are made by the tests, not by GameAi
+        mGame.setPlayerHuman(1, true);
+        mGame.setPlayerHuman(2, true);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+    }
+
+    @Test
+    public void testGetBoardSize() throws Exception {
+        TicTacToeGame game = new TicTacToeGame(null);
+        assertEquals(3, game.getBoardSize());
+    }
+
+    @Test
+    public void testGetPlayer() throws Exception {
+        mGame.resetGame(1);
+        mGame.makeMove(new TicTacToeGame.Move(1, 1, 1));
+        mGame.makeMove(new TicTacToeGame.Move(2, 2, 2));
+        mGame.makeMove(new TicTacToeGame.Move(1, 0, 0));
+
+        assertEquals(0, mGame.getPlayerAtPosition(0, 1));
+        assertEquals(1, mGame.getPlayerAtPosition(0, 0));
+        assertEquals(1, mGame.getPlayerAtPosition(1, 1));
+        assertEquals(2, mGame.getPlayerAtPosition(2, 2));
+    }
+
+    @Test
+    public void testMakeMove() throws Exception {
+        mGame.resetGame(1);
+
+        assertEquals(0, mGame.getPlayerAtPosition(1, 1));
+        mGame.makeMove(new Move(1, 1, 1));
+        assertEquals(1, mGame.getPlayerAtPosition(1, 1));
+
+        assertEquals(0, mGame.getPlayerAtPosition(0, 0));
+        mGame.makeMove(new Move(2, 0, 0));
+        assertEquals(2, mGame.getPlayerAtPosition(0, 0));
+    }
+
+    @Test
+    public void testGetNextPlayer() throws Exception {
+        mGame.resetGame(1);
+
+        assertEquals(1, mGame.getNextPlayer());
+
+        mGame.makeMove(new Move(1, 0, 0));
+        assertEquals(2, mGame.getNextPlayer());
+
+        mGame.makeMove(new Move(2, 1, 0));
+        assertEquals(1, mGame.getNextPlayer());
+    }
+
+    @Test
+    public void testWinningMove() throws Exception {
+        Move testMove;
+
+        // Same row win
+        mGame.resetGame(1);
+        assertTrue(mGame.makeMove(new Move(1, 2, 0)));
+        assertTrue(mGame.makeMove(new Move(2, 1, 0)));
+        assertTrue(mGame.makeMove(new Move(1, 2, 1)));
+        assertTrue(mGame.makeMove(new Move(2, 1, 1)));
+
+        testMove = new TicTacToeGame.Move(1, 2, 2);
+        assertTrue(mGame.isWinningMove(testMove));
+
+        // Same column win
+        mGame.resetGame(1);
+        assertTrue(mGame.makeMove(new Move(1, 0, 2)));
+        assertTrue(mGame.makeMove(new Move(2, 0, 0)));
+        assertTrue(mGame.makeMove(new Move(1, 1, 2)));
+        assertTrue(mGame.makeMove(new Move(2, 1, 0)));
+
+        testMove = new TicTacToeGame.Move(1, 2, 2);
+        assertTrue(mGame.isWinningMove(testMove));
+
+        // Diagonal win
+        mGame.resetGame(1);
+        assertTrue(mGame.makeMove(new Move(1, 0, 0)));
+        assertTrue(mGame.makeMove(new Move(2, 0, 1)));
+        assertTrue(mGame.makeMove(new Move(1, 1, 1)));
+        assertTrue(mGame.makeMove(new Move(2, 0, 2)));
+
+        testMove = new TicTacToeGame.Move(1, 2, 2);
+        assertTrue(mGame.isWinningMove(testMove));
+
+        // Reverse diagonal win
+        mGame.resetGame(1);
+        assertTrue(mGame.makeMove(new Move(1, 2, 0)));
+        assertTrue(mGame.makeMove(new Move(2, 0, 0)));
+        assertTrue(mGame.makeMove(new Move(1, 1, 1)));
+        assertTrue(mGame.makeMove(new Move(2, 1, 0)));
+
+        testMove = new Move(1, 0, 2);
+        assertTrue(mGame.isWinningMove(testMove));
+
+        mGame.resetGame(1);
+        assertTrue(mGame.makeMove(new Move(1, 2, 0)));
+        assertTrue(mGame.makeMove(new Move(2, 2, 1)));
+        assertTrue(mGame.makeMove(new Move(1, 1, 0)));
+        assertTrue(mGame.makeMove(new Move(2, 0, 0)));
+        assertTrue(mGame.makeMove(new Move(1, 0, 2)));
+        assertTrue(mGame.makeMove(new Move(2, 1, 1)));
+
+        testMove = new Move(1, 0, 1);
+        assertFalse(mGame.isWinningMove(testMove));
+        assertTrue(mGame.makeMove(testMove));
+
+        testMove = new Move(2, 2, 2);
+        assertTrue(mGame.isWinningMove(testMove));
+    }
+
+    @Test
+    public void testDrawMove() throws Exception {
+        Move testMove;
+
+        mGame.resetGame(1);
+        assertTrue(mGame.makeMove(new Move(1, 2, 0)));
+        assertTrue(mGame.makeMove(new Move(2, 2, 1)));
+        assertTrue(mGame.makeMove(new Move(1, 1, 0)));
+        assertTrue(mGame.makeMove(new Move(2, 0, 0)));
+        assertTrue(mGame.makeMove(new Move(1, 0, 2)));
+        assertTrue(mGame.makeMove(new Move(2, 1, 1)));
+        assertTrue(mGame.makeMove(new Move(1, 0, 1)));
+
+        testMove = new Move(2, 2, 2);
+        assertFalse(mGame.isDrawMove(testMove));
+        assertTrue(mGame.makeMove(testMove));
+
+        testMove = new Move(2, 2, 2);
+        assertFalse(mGame.isDrawMove(testMove));
+
+        int[][] board = new int[3][3];
+        Move move;
+        TicTacToeGame game;
+
+        board[0][0] = 2;
+        board[0][1] = 1;
+        board[0][2] = 2;
+
+        board[1][0] = 1;
+        board[1][1] = 1;
+        board[1][2] = 2;
+
+        board[2][0] = 1;
+        board[2][1] = 2;
+        board[2][2] = 0;
+
+        game = new TicTacToeGame(board);
+        move = new TicTacToeGame.Move(1, 2, 2);
+        assertTrue(game.isDrawMove(move));
+
+        // second test
+        board[0][0] = 0;
+        board[0][1] = 0;
+        board[0][2] = 0;
+
+        board[1][0] = 2;
+        board[1][1] = 1;
+        board[1][2] = 1;
+
+        board[2][0] = 1;
+        board[2][1] = 0;
+        board[2][2] = 2;
+
+        game = new TicTacToeGame(board);
+
+        move = new TicTacToeGame.Move(2, 0, 2);
+        assertFalse(game.isDrawMove(move));
+
+        // third test
+        board[0][0] = 1;
+        board[0][1] = 2;
+        board[0][2] = 1;
+
+        board[1][0] = 2;
+        board[1][1] = 2;
+        board[1][2] = 1;
+
+        board[2][0] = 1;
+        board[2][1] = 0;
+        board[2][2] = 0;
+
+        game = new TicTacToeGame(board);
+
+        move = new TicTacToeGame.Move(2, 2, 2);
+        assertFalse(game.isDrawMove(move));
+    }
+
+    @Test
+    public void testLargerBoard() throws Exception {
+        int[][] board = new int[8][8];
+        for (int idx = 0; idx < 7; idx++) {
+            board[idx][7 - idx] = 1;
+            board[idx][0] = 2;
+        }
+        TicTacToeGame game = new TicTacToeGame(board);
+        assertEquals(8, game.getBoardSize());
+        assertTrue(game.isWinningMove(new Move(1, 7, 0)));
+        assertTrue(game.isWinningMove(new Move(2, 7, 0)));
+        assertFalse(game.isWinningMove(new Move(2, 7, 1)));
+        assertFalse(game.isDrawMove(new Move(2, 7, 0)));
+        assertFalse(game.isWinningMove(new Move(1, 8, 0)));
+        assertEquals(1, game.getPlayerAtPosition(0, 7));
+        assertEquals(0, game.getPlayerAtPosition(8, 0));
+        assertEquals(64 - 14, game.getAvailableMoves().size());
+
+        int[][] copy = game.getBoard();
+        assertEquals(2, copy[6][0]);
+        copy[7][7] = 1;
+        assertEquals(0, game.getPlayerAtPosition(7, 7));
+    }
+
+    @Test
+    public void testSymmetricPositionHash() throws Exception {
+        int[][] board = new int[3][3];
+        board[0][0] = 1;
+        board[0][1] = 2;
+        TicTacToeGame game = new TicTacToeGame(board);
+
+        // rotated 90 degrees
+        board = new int[3][3];
+        board[0][2] = 1;
+        board[1][2] = 2;
+        TicTacToeGame rotated = new TicTacToeGame(board);
+
+        // reflected along the diagonal
+        board = new int[3][3];
+        board[0][0] = 1;
+        board[1][0] = 2;
+        TicTacToeGame reflected = new TicTacToeGame(board);
+
+        board = new int[3][3];
+        board[0][0] = 1;
+        board[1][1] = 2;
+        TicTacToeGame different = new TicTacToeGame(board);
+
+        assertEquals(game.getPositionHash(), rotated.getPositionHash());
+        assertEquals(game.getPositionHash(), reflected.getPositionHash());
+        assertNotEquals(game.getPositionHash(), different.getPositionHash());
+        assertNotEquals(game.getBitBoard().getHash(), rotated.getBitBoard().getHash());
+    }
+
+    @Test
+    public void testSearchMoves() throws Exception {
+        mGame.resetGame(1);
+        assertTrue(mGame.makeMove(new Move(1, 1, 1)));
+        long hash = mGame.getPositionHash();
+
+        GameAi.GameAiInterface copy = mGame.createSearchCopy();
+        copy.makeSearchMove(copy.encodeMove(new Move(2, 0, 0)));
+        copy.makeSearchMove(copy.encodeMove(new Move(1, 2, 2)));
+        assertEquals(2, copy.getNextPlayer());
+        assertEquals(6, copy.getAvailableMoves().size());
+        assertNotEquals(hash, copy.getPositionHash());
+
+        // the game itself is untouched
+        assertEquals(0, mGame.getPlayerAtPosition(0, 0));
+        assertEquals(2, mGame.getNextPlayer());
+
+        copy.unmakeSearchMove();
+        copy.unmakeSearchMove();
+        assertEquals(2, copy.getNextPlayer());
+        assertEquals(8, copy.getAvailableMoves().size());
+        assertEquals(hash, copy.getPositionHash());
+    }
+
+    @Test
+    public void testEncodedMoves() throws Exception {
+        mGame.resetGame(1);
+        assertTrue(mGame.makeMove(new Move(1, 1, 1)));
+        assertTrue(mGame.makeMove(new Move(2, 0, 0)));
+        assertTrue(mGame.makeMove(new Move(1, 0, 1)));
+
+        int[] moves = new int[mGame.getMaxMoveCount()];
+        int moveCount = mGame.getAvailableMoves(moves);
+        ArrayList<GameAi.MoveInterface> moveList = mGame.getAvailableMoves();
+        assertEquals(moveList.size(), moveCount);
+        for (int idx = 0; idx < moveCount; idx++) {
+            GameAi.MoveInterface move = mGame.decodeMove(moves[idx]);
+            assertEquals(moveList.get(idx), move);
+            assertEquals(moves[idx], mGame.encodeMove(move));
+            assertEquals(mGame.isWinningMove(move), mGame.isWinningMove(moves[idx]));
+            assertEquals(mGame.isDrawMove(move), mGame.isDrawMove(moves[idx]));
+        }
+        // player 2 has to block the middle column
+        assertTrue(mGame.isWinningMove(new Move(1, 2, 1)));
+        assertFalse(mGame.isWinningMove(mGame.encodeMove(new Move(2, 2, 1))));
+    }
+
+    @Test
+    public void testGameValue() throws Exception {
+        mGame.resetGame(1);
+        assertEquals(0, mGame.getGameValue(1), 0);
+
+        // the center starts a row, a column and both diagonals
+        assertTrue(mGame.makeMove(new Move(1, 1, 1)));
+        assertEquals(4, mGame.getGameValue(1), 0);
+        assertEquals(-4, mGame.getGameValue(2), 0);
+
+        // a corner blocks one diagonal and starts a row and a column
+        assertTrue(mGame.makeMove(new Move(2, 0, 0)));
+        assertEquals(3 - 2, mGame.getGameValue(1), 0);
+
+        // two squares in a row are worth more than several lines with one
+        assertTrue(mGame.makeMove(new Move(1, 1, 2)));
+        assertEquals(8 + 1 + 1 + 1 - 2, mGame.getGameValue(1), 0);
+
+        // the evaluation is restored when search moves are taken back
+        GameAi.GameAiInterface copy = mGame.createSearchCopy();
+        copy.makeSearchMove(copy.encodeMove(new Move(2, 1, 0)));
+        copy.unmakeSearchMove();
+        assertEquals(mGame.getGameValue(2), copy.getGameValue(2), 0);
+    }
+
+    @Test
+    public void testLargeBoardValueStaysBelowHeuristicLimit() throws Exception {
+        for (int size = 6; size <= BitBoard.MAX_SIZE; size++) {
+            // more rows one square short of a win are always worth more, and never clamped
+            double lastValue = 0;
+            int[][] board = new int[size][size];
+            for (int row = 0; row < 3; row++) {
+                for (int column = 0; column < size - 1; column++) {
+                    board[row][column] = 1;
+                }
+                double value = new TicTacToeGame(board).getGameValue(1);
+                assertTrue(value > lastValue);
+                assertTrue(value < GameAi.HEURISTIC_LIMIT);
+                lastValue = value;
+            }
+        }
+    }
+
+    @Test
+    public void testLineCountsThroughMakeAndUnmake() throws Exception {
+        // a full board draw, then a win on the last square of the top row
+        checkMakeAndUnmake(new int[]{4, 0, 2, 6, 3, 5, 1, 7, 8});
+        checkMakeAndUnmake(new int[]{0, 3, 1, 4, 2});
+    }
+
+    /**
+     * Make search moves and take them back, checking the line counts against the board each step
+     */
+    private void checkMakeAndUnmake(int[] cells) {
+        mGame.resetGame(1);
+        GameAi.GameAiInterface copy = mGame.createSearchCopy();
+        int[][] board = new int[3][3];
+        int player = 1;
+        for (int cell : cells) {
+            checkLineCounts(copy, board, player);
+            copy.makeSearchMove(cell);
+            board[cell / 3][cell % 3] = player;
+            player = 3 - player;
+        }
+        checkLineCounts(copy, board, player);
+        for (int idx = cells.length - 1; idx >= 0; idx--) {
+            copy.unmakeSearchMove();
+            board[cells[idx] / 3][cells[idx] % 3] = 0;
+            player = 3 - player;
+            checkLineCounts(copy, board, player);
+        }
+    }
+
+    private static void checkLineCounts(GameAi.GameAiInterface game, int[][] board, int player) {
+        assertEquals(countOpenLines(board), ((TicTacToeGame) game).getBitBoard().getOpenLineCount());
+        for (int cell = 0; cell < 9; cell++) {
+            int row = cell / 3;
+            int column = cell % 3;
+            if (board[row][column] != 0) {
+                continue;
+            }
+            board[row][column] = player;
+            assertEquals(hasLine(board, player), game.isWinningMove(cell));
+            if (!hasLine(board, player)) {
+                assertEquals(countOpenLines(board) == 0, game.isDrawMove(cell));
+            }
+            board[row][column] = 0;
+        }
+    }
+
+    private static int[][] getLines() {
+        return new int[][]{{0, 1, 2}, {3, 4, 5}, {6, 7, 8}, {0, 3, 6}, {1, 4, 7}, {2, 5, 8}, {0, 4, 8}, {2, 4, 6}};
+    }
+
+    private static boolean hasLine(int[][] board, int player) {
+        for (int[] line : getLines()) {
+            boolean full = true;
+            for (int cell : line) {
+                full &= board[cell / 3][cell % 3] == player;
+            }
+            if (full) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static int countOpenLines(int[][] board) {
+        int open = 0;
+        for (int[] line : getLines()) {
+            boolean[] players = new boolean[3];
+            for (int cell : line) {
+                players[board[cell / 3][cell % 3]] = true;
+            }
+            if (!players[1] || !players[2]) {
+                open++;
+            }
+        }
+        return open;
+    }
+}